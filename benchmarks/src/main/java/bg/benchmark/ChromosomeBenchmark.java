@@ -0,0 +1,58 @@
+package bg.benchmark;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bg.geneticalgorithm.Chromosome;
+
+/**
+ * The cost of the genetic operators of a chromosome, including the update
+ * of its adaptability.
+ *
+ * @author Qiyu Chen
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChromosomeBenchmark {
+	@Param({"5", "40"})
+	public int mutationSize;
+
+	private DoubleSupplier random;
+	private Chromosome chromosome;
+
+	@Setup
+	public void setup() {
+		SplittableRandom stream = new SplittableRandom(42);
+		random = stream::nextDouble;
+		chromosome = new Chromosome(random);
+	}
+
+	@Benchmark
+	public Chromosome crossover() {
+		return chromosome.crossover(random);
+	}
+
+	@Benchmark
+	public double mutation() {
+		chromosome.mutation(mutationSize, random);
+		return chromosome.getAdaptability();
+	}
+}
@@ -0,0 +1,91 @@
+package bg.benchmark;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bg.dataset.OutcomeTable;
+import bg.dataset.ReadExcel;
+import bg.dataset.WeightedOpponents;
+
+/**
+ * The cost of scoring one arrangement against the 78 data arrangements by
+ * each of the scoring paths, and by OutcomeTable.scoreAll() for a batch.
+ *
+ * @author Qiyu Chen
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompareBenchmark {
+	private static final int BATCH = 1000; // # of arrangements scored by scoreAll()
+
+	private final int[] arr = {2, 1, 16, 17, 20, 19, 17, 2, 3, 3};
+	private final int[] batch = new int[BATCH * 10];
+	private final double[] scores = new double[BATCH];
+	private int[][] dataset;
+	private OutcomeTable table;
+	private WeightedOpponents opponents;
+
+	@Setup
+	public void setup() {
+		dataset = ReadExcel.getArray();
+		table = new OutcomeTable(dataset);
+		opponents = new WeightedOpponents(dataset);
+
+		Random random = new Random(42);
+		for (int i = 0; i < BATCH * 100; i++) {
+			batch[i / 100 * 10 + random.nextInt(10)]++;
+		}
+	}
+
+	/**
+	 * ReadExcel.compare(int[]) looks up the data of the excel file on every call
+	 */
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MICROSECONDS)
+	public double compareExcel() throws IOException {
+		return ReadExcel.compare(arr);
+	}
+
+	@Benchmark
+	public double compareArray() {
+		return ReadExcel.compare(arr, dataset);
+	}
+
+	@Benchmark
+	public double weightedOpponents() {
+		return opponents.score(arr);
+	}
+
+	@Benchmark
+	public double outcomeTable() {
+		return table.score(arr);
+	}
+
+	/**
+	 * the time per arrangement of scoring a batch
+	 */
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public double[] outcomeTableBatch() {
+		table.scoreAll(batch, 0, BATCH, scores, 0);
+		return scores;
+	}
+}
@@ -0,0 +1,63 @@
+package bg.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bg.geneticalgorithm.FlatPopulation;
+import bg.geneticalgorithm.GeneticAlgorithm;
+
+/**
+ * The cost of one generation of the genetic algorithm at several population
+ * sizes.
+ *
+ * @author Qiyu Chen
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EvolveBenchmark {
+	@Param({"150", "1500", "15000"})
+	public int size;
+
+	private GeneticAlgorithm ga;
+	private FlatPopulation flat;
+
+	@Setup
+	public void setup() {
+		ga = new GeneticAlgorithm(size, 1, 42);
+		flat = new FlatPopulation(size, 42);
+	}
+
+	@TearDown
+	public void tearDown() {
+		ga.close();
+	}
+
+	@Benchmark
+	public GeneticAlgorithm evolve() {
+		ga.evolve();
+		return ga;
+	}
+
+	@Benchmark
+	public FlatPopulation evolveFlat() {
+		flat.evolve();
+		return flat;
+	}
+}
@@ -0,0 +1,97 @@
+package bg.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import bg.dataset.OutcomeTable;
+import bg.dataset.ReadExcel;
+import bg.search.Compositions;
+import bg.search.ParallelSearch;
+
+/**
+ * The cost of a fixed slice of the exhaustive search: SLICE arrangements
+ * starting at rank START, in the same order as ReadExcel.findBest().
+ *
+ * @author Qiyu Chen
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FindBestBenchmark {
+	private static final long START = 100_000_000_000L; // rank of the first arrangement
+	private static final int SLICE = 1 << 20; // # of arrangements
+
+	private Compositions compositions;
+	private int[][] dataset;
+	private OutcomeTable table;
+	private ParallelSearch search;
+
+	@Setup
+	public void setup() {
+		compositions = new Compositions();
+		dataset = ReadExcel.getArray();
+		table = new OutcomeTable(dataset);
+		search = new ParallelSearch();
+	}
+
+	/**
+	 * the slice as findBest() scores it: a new array and compare() for each
+	 */
+	@Benchmark
+	public double findBestSlice() {
+		int[] arr = new int[Compositions.CASTLES];
+		double best = 0, score;
+
+		compositions.unrank(START, arr);
+		for (int i = 0; i < SLICE; i++) {
+			int[] candidate = arr.clone();
+			score = ReadExcel.compare(candidate, dataset);
+			if (score > best) {
+				best = score;
+			}
+			compositions.next(arr);
+		}
+		return best;
+	}
+
+	/**
+	 * the slice on one thread in place with the outcome table
+	 */
+	@Benchmark
+	public double outcomeTableSlice() {
+		int[] arr = new int[Compositions.CASTLES];
+		double best = 0, score;
+
+		compositions.unrank(START, arr);
+		for (int i = 0; i < SLICE; i++) {
+			score = table.score(arr);
+			if (score > best) {
+				best = score;
+			}
+			compositions.next(arr);
+		}
+		return best;
+	}
+
+	/**
+	 * the slice on every core
+	 */
+	@Benchmark
+	public double parallelSearchSlice() {
+		return search.search(START, START + SLICE).getScore();
+	}
+}
@@ -0,0 +1,34 @@
+package bg.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Run the benchmarks with the usual JMH command line options, writing the
+ * results as JSON to jmh-result.json unless -rf/-rff say otherwise.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class RunBenchmarks {
+	private static final String RESULT_FILE = "jmh-result.json";
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		OptionsBuilder options = new OptionsBuilder();
+		options.parent(cmd);
+
+		if (!cmd.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		if (!cmd.getResult().hasValue()) {
+			options.result(RESULT_FILE);
+		}
+
+		new Runner(options.build()).run();
+	}
+}
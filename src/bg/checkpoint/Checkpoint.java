@@ -0,0 +1,194 @@
+package bg.checkpoint;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A binary checkpoint of a long run, so that the run can be resumed after
+ * the JVM restarts instead of starting over.
+ *
+ * The state is written into a byte array on the thread of the run, which
+ * takes microseconds, and the file is written by a background thread: first
+ * to a temp file next to it, which is forced to disk and then moved over
+ * the checkpoint, so the checkpoint on disk is always a complete one. If the
+ * writer is still busy, only the newest state is kept for it.
+ *
+ * The file starts with a magic number, the format version and the kind of
+ * run, followed by the state written by the run.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class Checkpoint implements AutoCloseable {
+	private static final int MAGIC = 0x42474350; // "BGCP"
+	private static final int VERSION = 1;
+
+	private final Path path;
+	private final Path temp; // written first and moved over path
+	private final String kind; // the kind of run the state is of
+	private final long intervalNanos; // the time between two checkpoints
+	private long lastSave = System.nanoTime();
+
+	private final AtomicReference<byte[]> pending = new AtomicReference<byte[]>(); // the state to write next
+	private final Thread writer;
+	private volatile boolean closed;
+	private volatile long written; // # of checkpoints written
+
+	/**
+	 * the state of a run to write
+	 */
+	public interface State {
+		void write(DataOutputStream out) throws IOException;
+	}
+
+	/**
+	 * @param path - the checkpoint file
+	 * @param kind - the kind of run, checked on load
+	 * @param interval - the time between two checkpoints
+	 * @param unit - the unit of the interval
+	 */
+	public Checkpoint(Path path, String kind, long interval, TimeUnit unit) {
+		this.path = path.toAbsolutePath();
+		this.temp = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+		this.kind = kind;
+		this.intervalNanos = unit.toNanos(interval);
+
+		writer = new Thread(this::run, "checkpoint-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * @return whether the interval has passed since the last checkpoint
+	 */
+	public boolean isDue() {
+		return System.nanoTime() - lastSave >= intervalNanos;
+	}
+
+	/**
+	 * take the state now and write it in the background
+	 * @param state
+	 */
+	public void save(State state) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(kind);
+			state.write(out);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e); // not thrown in memory
+		}
+
+		lastSave = System.nanoTime();
+		pending.set(bytes.toByteArray());
+		LockSupport.unpark(writer);
+	}
+
+	/**
+	 * read the last checkpoint
+	 * @return the state after the header, or null if there is no checkpoint
+	 * @throws IOException if the file is not a checkpoint of this kind
+	 */
+	public DataInputStream load() throws IOException {
+		if (!Files.exists(path)) {
+			return null;
+		}
+
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(Files.readAllBytes(path)));
+		if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+			throw new IOException("not a checkpoint of this version: " + path);
+		}
+		String found = in.readUTF();
+		if (!found.equals(kind)) {
+			throw new IOException("a checkpoint of " + found + " instead of " + kind + ": " + path);
+		}
+		return in;
+	}
+
+	/**
+	 * write the pending states until closed
+	 */
+	private void run() {
+		while (true) {
+			byte[] data = pending.getAndSet(null);
+			if (data != null) {
+				write(data);
+			} else if (closed) {
+				// a state saved right before close
+				data = pending.getAndSet(null);
+				if (data != null) {
+					write(data);
+				}
+				return;
+			} else {
+				LockSupport.park(this);
+			}
+		}
+	}
+
+	/**
+	 * write the temp file and move it over the checkpoint, only printing
+	 * the error if it fails, so that the run goes on
+	 */
+	private void write(byte[] data) {
+		try {
+			try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer buffer = ByteBuffer.wrap(data);
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+				channel.force(true);
+			}
+
+			try {
+				Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+			written++;
+		} catch (IOException e) {
+			System.err.println("failed to write the checkpoint " + path + ": " + e);
+		}
+	}
+
+	/**
+	 * @return the number of checkpoints written
+	 */
+	public long getWritten() {
+		return written;
+	}
+
+	public Path getPath() {
+		return path;
+	}
+
+	/**
+	 * write the last state saved and stop the writer
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		LockSupport.unpark(writer);
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,288 @@
+package bg.cluster;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+import bg.search.Compositions;
+import bg.search.Incumbent;
+
+/**
+ * Hands out the work of a long run to Workers in other JVMs over TCP, on
+ * this host or on others, and keeps the best arrangement they send back.
+ * The work is the exhaustive search split into ranges of ranks, the same
+ * order as ReadExcel.findBest(), or the simulations of multiSimulate()
+ * split into ranges of seeds.
+ *
+ * The protocol is one line per message. The coordinator greets a worker
+ * with the job, "job search castles soldiers maxPerCastle" or "job ga size
+ * generations", and the worker then asks for units with "next", to which
+ * the coordinator replies "unit id from to", or "done" when every unit is
+ * done. The worker streams "best id score genes" as it finds incumbents,
+ * ends a unit with "result id score genes", and says "alive" every
+ * HEARTBEAT_MILLIS meanwhile.
+ *
+ * A worker whose connection breaks, or that is silent for LEASE_MILLIS,
+ * is taken as dead, and its unit goes back to the front of the queue for
+ * the next worker. So is a worker that sends a line of another unit than
+ * the one it was given. A unit done twice counts once.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class Coordinator implements AutoCloseable {
+	public static final int DEFAULT_PORT = 7071;
+	static final long HEARTBEAT_MILLIS = 2000; // the time between two "alive" of a worker
+	private static final int LEASE_MILLIS = 10000; // the silence after which a worker is dead
+	private static final long SEARCH_UNIT = 1L << 30; // # of ranks of a unit of the exhaustive search
+
+	private final String job; // the job line sent to every worker
+	private final int units; // # of units
+	private final BlockingDeque<WorkUnit> pending = new LinkedBlockingDeque<WorkUnit>();
+	private final Set<Integer> done = ConcurrentHashMap.newKeySet(); // the ids of the units done
+	private final CountDownLatch finished;
+
+	private final ServerSocket serverSocket;
+	private final ExecutorService connections = Executors.newCachedThreadPool();
+	private volatile boolean closed;
+	private Incumbent best; // guarded by this
+
+	/**
+	 * @param port - the port to listen on, 0 for any free port
+	 * @param job - the job line
+	 * @param size - # of ranks or seeds
+	 * @param unitSize - # of ranks or seeds of a unit
+	 */
+	private Coordinator(int port, String job, long size, long unitSize) throws IOException {
+		this.job = job;
+		int id = 0;
+		for (long from = 0; from < size; from += unitSize) {
+			pending.add(new WorkUnit(id++, from, Math.min(size, from + unitSize)));
+		}
+		this.units = id;
+		this.finished = new CountDownLatch(units);
+		this.serverSocket = new ServerSocket(port, 50, InetAddress.getByName("0.0.0.0"));
+	}
+
+	/**
+	 * the exhaustive search of the compositions against the first castles
+	 * of the excel data
+	 * @param port - the port to listen on, 0 for any free port
+	 * @param compositions - the arrangements to search
+	 * @param unitSize - # of ranks of a unit
+	 * @throws IOException if the port cannot be listened on
+	 */
+	public static Coordinator search(int port, Compositions compositions, long unitSize) throws IOException {
+		String job = "search " + compositions.getCastles() + " " + compositions.getSoldiers() + " "
+				+ compositions.getMaxPerCastle();
+		return new Coordinator(port, job, compositions.size(), unitSize);
+	}
+
+	/**
+	 * the simulations of multiSimulate(), each of a population evolving
+	 * from its own seed
+	 * @param port - the port to listen on, 0 for any free port
+	 * @param size - population size
+	 * @param gen - number of generations of each simulation
+	 * @param repeat - number of simulations, with seeds 0..repeat-1
+	 * @param seedsPerUnit - # of simulations of a unit
+	 * @throws IOException if the port cannot be listened on
+	 */
+	public static Coordinator multiSimulate(int port, int size, int gen, int repeat, int seedsPerUnit) throws IOException {
+		return new Coordinator(port, "ga " + size + " " + gen, repeat, seedsPerUnit);
+	}
+
+	/**
+	 * serve the workers until every unit is done
+	 * @return the best arrangement of all units
+	 * @throws InterruptedException
+	 */
+	public Incumbent run() throws InterruptedException {
+		Thread acceptor = new Thread(this::accept, "coordinator-accept");
+		acceptor.setDaemon(true);
+		acceptor.start();
+
+		System.out.println("coordinator on port " + getPort() + ": " + job + ", " + units + " units");
+		finished.await();
+		synchronized (this) {
+			return best;
+		}
+	}
+
+	/**
+	 * accept workers until closed
+	 */
+	private void accept() {
+		while (!closed) {
+			try {
+				Socket socket = serverSocket.accept();
+				connections.execute(() -> handle(socket));
+			} catch (IOException e) {
+				if (!closed) {
+					System.err.println("failed to accept a worker: " + e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * serve one worker until it is done or dead
+	 */
+	private void handle(Socket socket) {
+		String worker = socket.getRemoteSocketAddress().toString();
+		WorkUnit unit = null; // the unit the worker is on
+		try (Socket s = socket;
+				BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+				PrintWriter out = new PrintWriter(s.getOutputStream(), true, StandardCharsets.US_ASCII)) {
+			s.setSoTimeout(LEASE_MILLIS);
+			out.println("job " + job);
+
+			String line;
+			while ((line = in.readLine()) != null) {
+				String[] fields = line.trim().split(" ");
+				switch (fields[0]) {
+				case "alive":
+					break;
+				case "best":
+					check(unit, fields);
+					offer(WorkUnit.parseIncumbent(fields, 2));
+					break;
+				case "result":
+					check(unit, fields);
+					offer(WorkUnit.parseIncumbent(fields, 2));
+					if (done.add(unit.id)) {
+						finished.countDown();
+					}
+					unit = null;
+					break;
+				case "next":
+					unit = take();
+					out.println(unit == null ? "done" : unit.toString());
+					if (unit == null) {
+						return;
+					}
+					break;
+				default:
+					throw new IOException("unknown message: " + line);
+				}
+			}
+		} catch (IOException | RuntimeException e) {
+			System.err.println("lost worker " + worker + ": " + e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			if (unit != null && !done.contains(unit.id)) {
+				System.out.println("reassigning " + unit + " of " + worker);
+				pending.addFirst(unit);
+			}
+		}
+	}
+
+	/**
+	 * @param unit - the unit the worker is on, null if none
+	 * @param fields - the words of a "best" or "result" line
+	 * @throws IOException if the line is not of the unit, so that the
+	 * worker is dropped and its unit handed to another
+	 */
+	private static void check(WorkUnit unit, String[] fields) throws IOException {
+		if (unit == null || !fields[1].equals(Integer.toString(unit.id))) {
+			throw new IOException("\"" + fields[0] + "\" of unit " + fields[1] + " while on "
+					+ (unit == null ? "none" : Integer.toString(unit.id)));
+		}
+	}
+
+	/**
+	 * @return the next unit not done, or null when every unit is done
+	 */
+	private WorkUnit take() throws InterruptedException {
+		while (finished.getCount() > 0 && !closed) {
+			WorkUnit unit = pending.poll(100, TimeUnit.MILLISECONDS);
+			if (unit != null && !done.contains(unit.id)) {
+				return unit;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * keep the incumbent if it is the best so far
+	 */
+	private synchronized void offer(Incumbent incumbent) {
+		if (best == null || incumbent.getScore() > best.getScore()) {
+			best = incumbent;
+			System.out.println("new best: " + best);
+		}
+	}
+
+	/**
+	 * @return # of units done
+	 */
+	public int getDone() {
+		return done.size();
+	}
+
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * stop accepting workers, tell the ones asking for a unit that they are
+	 * done, and drop the others after LEASE_MILLIS
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		serverSocket.close();
+		connections.shutdown();
+		try {
+			connections.awaitTermination(LEASE_MILLIS, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			connections.shutdownNow();
+		}
+	}
+
+	/**
+	 * run a coordinator
+	 * @param args - "search" [port [castles soldiers maxPerCastle]], or
+	 * "ga" [port [size generations repeat seedsPerUnit]]
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException {
+		String kind = args.length > 0 ? args[0] : "search";
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+
+		Coordinator coordinator;
+		if (kind.equals("ga")) {
+			coordinator = args.length > 5
+					? multiSimulate(port, Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+							Integer.parseInt(args[4]), Integer.parseInt(args[5]))
+					: multiSimulate(port, 1500, 400, 1000, 10);
+		} else {
+			Compositions compositions = args.length > 4
+					? new Compositions(Integer.parseInt(args[2]), Integer.parseInt(args[3]), Integer.parseInt(args[4]))
+					: new Compositions();
+			coordinator = search(port, compositions, SEARCH_UNIT);
+		}
+
+		try (Coordinator c = coordinator) {
+			long start = System.currentTimeMillis();
+			Incumbent best = c.run();
+			System.out.println("best: " + best);
+			System.out.println("time: " + (System.currentTimeMillis() - start) / 1000 + "s");
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package bg.cluster;
+
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import bg.search.Incumbent;
+
+/**
+ * A unit of work the Coordinator hands to a Worker: a range of ranks of
+ * the exhaustive search, or a range of seeds of the genetic algorithm,
+ * each seed one simulation. A unit gives the same result on any worker,
+ * whatever its number of cores, as the genetic algorithm splits its random
+ * streams into a fixed number of slices on the pool of the worker. So a
+ * unit of a dead worker is simply handed to another.
+ *
+ * Units and incumbents travel as words of a line, genes as numbers
+ * separated by commas.
+ *
+ * @author Qiyu Chen
+ *
+ */
+final class WorkUnit {
+	final int id;
+	final long from; // the first rank or seed, inclusive
+	final long to; // the last rank or seed, exclusive
+
+	WorkUnit(int id, long from, long to) {
+		this.id = id;
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * @param fields - the words of a line, "unit", id, from and to
+	 * @return the unit
+	 */
+	static WorkUnit parse(String[] fields) {
+		return new WorkUnit(Integer.parseInt(fields[1]), Long.parseLong(fields[2]), Long.parseLong(fields[3]));
+	}
+
+	/**
+	 * @return the words of an incumbent, the score and the genes
+	 */
+	static String format(Incumbent incumbent) {
+		return incumbent.getScore() + " "
+				+ Arrays.stream(incumbent.getGenes()).mapToObj(Integer::toString).collect(Collectors.joining(","));
+	}
+
+	/**
+	 * @param fields - the words of a line
+	 * @param start - index of the score
+	 * @return the incumbent of the score and the genes from fields[start]
+	 */
+	static Incumbent parseIncumbent(String[] fields, int start) {
+		double score = Double.parseDouble(fields[start]);
+		int[] genes = Arrays.stream(fields[start + 1].split(",")).mapToInt(Integer::parseInt).toArray();
+		return new Incumbent(score, genes);
+	}
+
+	@Override
+	public String toString() {
+		return "unit " + id + " " + from + " " + to;
+	}
+}
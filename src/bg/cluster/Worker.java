@@ -0,0 +1,173 @@
+package bg.cluster;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import bg.dataset.ReadExcel;
+import bg.geneticalgorithm.Chromosome;
+import bg.geneticalgorithm.GeneticAlgorithm;
+import bg.search.Compositions;
+import bg.search.Incumbent;
+import bg.search.ParallelSearch;
+
+/**
+ * Does the units of a Coordinator on every core of this JVM until the
+ * coordinator has no more, and sends back the incumbents. See Coordinator
+ * for the protocol.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class Worker {
+	private final String host;
+	private final int port;
+	private PrintWriter out; // guarded by this, shared with the heartbeat
+	private int units; // # of units done
+	private int[][] dataset; // the dataset of the search job, read once
+
+	public Worker(String host, int port) {
+		this.host = host;
+		this.port = port;
+	}
+
+	/**
+	 * do units until the coordinator has no more
+	 * @throws IOException if the connection breaks
+	 */
+	public void run() throws IOException {
+		try (Socket socket = new Socket(host, port);
+				BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII))) {
+			synchronized (this) {
+				out = new PrintWriter(socket.getOutputStream(), true, StandardCharsets.US_ASCII);
+			}
+			String[] job = read(in).split(" ");
+
+			Thread heartbeat = new Thread(this::heartbeat, "worker-heartbeat");
+			heartbeat.setDaemon(true);
+			heartbeat.start();
+			try {
+				while (true) {
+					send("next");
+					String[] fields = read(in).split(" ");
+					if (fields[0].equals("done")) {
+						return;
+					}
+
+					WorkUnit unit = WorkUnit.parse(fields);
+					Incumbent best = job[1].equals("ga") ? simulate(job, unit) : search(job, unit);
+					send("result " + unit.id + " " + WorkUnit.format(best));
+					units++;
+				}
+			} finally {
+				heartbeat.interrupt();
+			}
+		}
+	}
+
+	/**
+	 * @return the next line from the coordinator
+	 * @throws IOException if the connection is closed
+	 */
+	private static String read(BufferedReader in) throws IOException {
+		String line = in.readLine();
+		if (line == null) {
+			throw new IOException("the coordinator closed the connection");
+		}
+		return line;
+	}
+
+	private synchronized void send(String message) {
+		out.println(message);
+	}
+
+	/**
+	 * say "alive" until interrupted
+	 */
+	private void heartbeat() {
+		try {
+			while (true) {
+				Thread.sleep(Coordinator.HEARTBEAT_MILLIS);
+				send("alive");
+			}
+		} catch (InterruptedException e) {
+			// the worker is done
+		}
+	}
+
+	/**
+	 * search a range of ranks on every core, sending every new best of the
+	 * unit as it is found
+	 * @param job - "job search castles soldiers maxPerCastle"
+	 */
+	private Incumbent search(String[] job, WorkUnit unit) {
+		int castles = Integer.parseInt(job[2]);
+		Compositions compositions = new Compositions(castles, Integer.parseInt(job[3]), Integer.parseInt(job[4]));
+
+		if (dataset == null) {
+			// the first castles of the excel data
+			dataset = ReadExcel.getArray();
+			for (int row = 0; row < dataset.length; row++) {
+				dataset[row] = Arrays.copyOf(dataset[row], castles);
+			}
+		}
+
+		ParallelSearch search = new ParallelSearch(compositions, dataset, ForkJoinPool.commonPool());
+		search.setListener(best -> send("best " + unit.id + " " + WorkUnit.format(best)));
+		return search.search(unit.from, unit.to);
+	}
+
+	/**
+	 * simulate the genetic algorithm once for every seed of the unit on the
+	 * common pool, sending the best of each simulation as it ends
+	 * @param job - "job ga size generations"
+	 */
+	private Incumbent simulate(String[] job, WorkUnit unit) {
+		int size = Integer.parseInt(job[2]);
+		int gen = Integer.parseInt(job[3]);
+
+		Incumbent best = null;
+		for (long seed = unit.from; seed < unit.to; seed++) {
+			Incumbent found;
+			try (GeneticAlgorithm ga = new GeneticAlgorithm(size, ForkJoinPool.commonPool(), seed)) {
+				for (int g = 0; g < gen; g++) {
+					ga.evolve();
+				}
+				Chromosome bestEver = ga.getBestEver();
+				found = new Incumbent(bestEver.getAdaptability(), bestEver.getGenes().clone());
+			}
+
+			if (best == null || found.getScore() > best.getScore()) {
+				best = found;
+				send("best " + unit.id + " " + WorkUnit.format(best));
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * @return the number of units done
+	 */
+	public int getUnits() {
+		return units;
+	}
+
+	/**
+	 * run a worker
+	 * @param args - the host and the port of the coordinator, localhost
+	 * and Coordinator.DEFAULT_PORT if none
+	 */
+	public static void main(String[] args) throws IOException {
+		String host = args.length > 0 ? args[0] : "localhost";
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : Coordinator.DEFAULT_PORT;
+
+		Worker worker = new Worker(host, port);
+		worker.run();
+		System.out.println("units done: " + worker.getUnits());
+	}
+}
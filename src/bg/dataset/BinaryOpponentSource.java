@@ -0,0 +1,133 @@
+package bg.dataset;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Data arrangements streamed from a binary file in the format of
+ * OpponentData through a reusable buffer, instead of mapping the whole file.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class BinaryOpponentSource implements OpponentSource {
+	private static final int BUFFER_BYTES = 1 << 16;
+
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+	private final int cols;
+	private final int cellBytes;
+	private long remaining; // # of arrangements not read yet
+
+	public BinaryOpponentSource(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+
+		ByteBuffer header = ByteBuffer.allocate(OpponentData.HEADER_BYTES);
+		while (header.hasRemaining() && channel.read(header) >= 0) {
+		}
+		header.flip();
+		if (header.limit() < OpponentData.HEADER_BYTES || header.getInt(0) != OpponentData.MAGIC) {
+			channel.close();
+			throw new IOException("not a data arrangement file: " + path);
+		}
+
+		remaining = header.getInt(4) & 0xFFFFFFFFL;
+		cols = header.getInt(8);
+		cellBytes = header.getInt(12);
+		if (cols < 0 || (cellBytes != 1 && cellBytes != 4)) {
+			channel.close();
+			throw new IOException("corrupted data arrangement file: " + path);
+		}
+		buffer.limit(0);
+	}
+
+	@Override
+	public int getCols() {
+		return cols;
+	}
+
+	@Override
+	public int read(int[] rows, int maxRows) throws IOException {
+		int count = (int)Math.min(maxRows, remaining);
+		int cells = count * cols;
+
+		for (int i = 0; i < cells; i++) {
+			// a read may return fewer bytes than a cell
+			while (buffer.remaining() < cellBytes) {
+				buffer.compact();
+				int read = channel.read(buffer);
+				buffer.flip();
+				if (read < 0 && buffer.remaining() < cellBytes) {
+					throw new IOException("unexpected end of data arrangement file");
+				}
+			}
+			rows[i] = cellBytes == 1 ? buffer.get() & 0xFF : buffer.getInt();
+		}
+
+		remaining -= count;
+		return count;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * write every arrangement of a source to a binary file in the format of
+	 * OpponentData, one byte per cell, with a fixed amount of memory
+	 * @param source - the arrangements, with every cell in [0, 255]
+	 * @param path - the binary file, replaced atomically
+	 * @return the number of arrangements written
+	 * @throws IOException
+	 */
+	public static long convert(OpponentSource source, Path path) throws IOException {
+		int cols = source.getCols();
+		int chunk = Math.max(1, BUFFER_BYTES / Math.max(1, cols));
+		int[] rows = new int[chunk * cols];
+		ByteBuffer out = ByteBuffer.allocate(chunk * cols);
+		long count = 0;
+
+		Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+			channel.position(OpponentData.HEADER_BYTES);
+
+			int read;
+			while ((read = source.read(rows, chunk)) > 0) {
+				out.clear();
+				for (int i = 0; i < read * cols; i++) {
+					if (rows[i] < 0 || rows[i] > 0xFF) {
+						throw new IOException("cell out of byte range at arrangement " + (count + i / cols));
+					}
+					out.put((byte)rows[i]);
+				}
+				out.flip();
+				while (out.hasRemaining()) {
+					channel.write(out);
+				}
+				count += read;
+			}
+			if (count > 0xFFFFFFFFL) {
+				throw new IOException("too many arrangements: " + count);
+			}
+
+			ByteBuffer header = ByteBuffer.allocate(OpponentData.HEADER_BYTES);
+			header.putInt(OpponentData.MAGIC).putInt((int)count).putInt(cols).putInt(1).flip();
+			while (header.hasRemaining()) {
+				channel.write(header, OpponentData.HEADER_BYTES - header.remaining());
+			}
+			channel.force(true);
+		} catch (IOException e) {
+			Files.deleteIfExists(temp);
+			throw e;
+		}
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		return count;
+	}
+}
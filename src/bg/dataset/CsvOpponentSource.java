@@ -0,0 +1,99 @@
+package bg.dataset;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Data arrangements read from a CSV file with one arrangement per line and
+ * the soldiers of each castle separated by commas. Blank lines and a first
+ * line that is not numeric (a header) are skipped.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class CsvOpponentSource implements OpponentSource {
+	private final BufferedReader reader;
+	private final int cols;
+	private String pending; // the first arrangement, read to count the castles
+	private long line; // # of lines read
+
+	public CsvOpponentSource(Path path) throws IOException {
+		reader = Files.newBufferedReader(path, StandardCharsets.US_ASCII);
+
+		String first = nextLine();
+		if (first != null && !Character.isDigit(first.trim().charAt(0))) {
+			first = nextLine(); // skip the header
+		}
+		pending = first;
+		cols = first == null ? 0 : first.split(",").length;
+	}
+
+	@Override
+	public int getCols() {
+		return cols;
+	}
+
+	@Override
+	public int read(int[] buffer, int maxRows) throws IOException {
+		int rows = 0;
+		String text;
+
+		while (rows < maxRows && (text = pending != null ? pending : nextLine()) != null) {
+			pending = null;
+			parse(text, buffer, rows * cols);
+			rows++;
+		}
+		return rows;
+	}
+
+	/**
+	 * parse one line of comma-separated numbers without splitting it
+	 */
+	private void parse(String text, int[] buffer, int offset) throws IOException {
+		int col = 0, value = 0;
+		boolean digits = false;
+
+		for (int i = 0; i <= text.length(); i++) {
+			char c = i < text.length() ? text.charAt(i) : ',';
+			if (c >= '0' && c <= '9') {
+				value = value * 10 + (c - '0');
+				digits = true;
+			} else if (c == ',') {
+				if (!digits || col >= cols) {
+					throw new IOException("invalid arrangement at line " + line + ": " + text);
+				}
+				buffer[offset + col++] = value;
+				value = 0;
+				digits = false;
+			} else if (c != ' ' && c != '\t') {
+				throw new IOException("invalid arrangement at line " + line + ": " + text);
+			}
+		}
+
+		if (col != cols) {
+			throw new IOException("expected " + cols + " castles at line " + line + ": " + text);
+		}
+	}
+
+	/**
+	 * @return the next line that is not blank, or null at the end
+	 */
+	private String nextLine() throws IOException {
+		String text;
+		while ((text = reader.readLine()) != null) {
+			line++;
+			if (!text.trim().isEmpty()) {
+				return text;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
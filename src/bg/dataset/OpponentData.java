@@ -0,0 +1,201 @@
+package bg.dataset;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The data arrangements in a compact binary file that is memory-mapped
+ * instead of parsing the excel file every time. The file is converted once
+ * from the excel file and placed next to it with the extension .bin; it is
+ * converted again whenever the excel file is newer.
+ *
+ * The binary file is a header of 4 ints (MAGIC, # of rows, # of columns,
+ * bytes per cell) followed by the cells row by row, one unsigned byte each
+ * when every cell fits, or else one int each.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class OpponentData {
+	static final int MAGIC = 0x424C5430; // "BLT0"
+	static final int HEADER_BYTES = 16;
+
+	// the mapped data of each excel file
+	private static final Map<String, OpponentData> LOADED = new ConcurrentHashMap<String, OpponentData>();
+
+	private final ByteBuffer cells; // mapped cells, only read by absolute gets
+	private final int rows;
+	private final int cols;
+	private final int cellBytes;
+	private volatile WeightedOpponents weighted; // built on first use
+
+	private OpponentData(ByteBuffer buffer) throws IOException {
+		if (buffer.limit() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+			throw new IOException("not a data arrangement file");
+		}
+
+		rows = buffer.getInt(4);
+		cols = buffer.getInt(8);
+		cellBytes = buffer.getInt(12);
+		if (rows < 0 || cols < 0 || (cellBytes != 1 && cellBytes != 4)
+				|| buffer.limit() < HEADER_BYTES + (long)rows * cols * cellBytes) {
+			throw new IOException("corrupted data arrangement file");
+		}
+
+		buffer.position(HEADER_BYTES);
+		cells = buffer.slice();
+	}
+
+	/**
+	 * the shared data of an excel file, converted to the binary file first
+	 * if needed
+	 * @param excelName - path of the excel file
+	 * @return the mapped data
+	 * @throws IOException
+	 */
+	public static OpponentData load(String excelName) throws IOException {
+		OpponentData data = LOADED.get(excelName);
+		if (data != null) {
+			return data;
+		}
+
+		synchronized (LOADED) {
+			data = LOADED.get(excelName);
+			if (data == null) {
+				Path excel = Paths.get(excelName);
+				Path bin = binaryPath(excel);
+				if (!Files.exists(bin) || Files.getLastModifiedTime(bin).compareTo(Files.getLastModifiedTime(excel)) < 0) {
+					write(ReadExcel.parseExcel(excelName), bin);
+				}
+				data = map(bin);
+				LOADED.put(excelName, data);
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * @return the binary file next to the excel file
+	 */
+	public static Path binaryPath(Path excel) {
+		String name = excel.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		return excel.resolveSibling((dot < 0 ? name : name.substring(0, dot)) + ".bin");
+	}
+
+	/**
+	 * memory-map a binary file
+	 * @param path
+	 * @return the mapped data
+	 * @throws IOException
+	 */
+	public static OpponentData map(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new OpponentData(buffer);
+		}
+	}
+
+	/**
+	 * write the data arrangements to a binary file, replacing it atomically
+	 * @param dataset - the data arrangements
+	 * @param path - the binary file
+	 * @throws IOException
+	 */
+	public static void write(int[][] dataset, Path path) throws IOException {
+		int rows = dataset.length;
+		int cols = rows == 0 ? 0 : dataset[0].length;
+		int cellBytes = 1;
+		for (int[] row : dataset) {
+			for (int value : row) {
+				if (value < 0 || value > 0xFF) {
+					cellBytes = 4;
+				}
+			}
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + rows * cols * cellBytes);
+		buffer.putInt(MAGIC).putInt(rows).putInt(cols).putInt(cellBytes);
+		for (int[] row : dataset) {
+			for (int value : row) {
+				if (cellBytes == 1) {
+					buffer.put((byte)value);
+				} else {
+					buffer.putInt(value);
+				}
+			}
+		}
+		buffer.flip();
+
+		Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+		try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			channel.force(true);
+		}
+		Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * @return the number of soldiers of a data arrangement at a castle
+	 */
+	public int get(int row, int col) {
+		int index = row * cols + col;
+		return cellBytes == 1 ? cells.get(index) & 0xFF : cells.getInt(index * 4);
+	}
+
+	/**
+	 * @return a copy of the data arrangements as int array
+	 */
+	public int[][] toArray() {
+		int[][] dataset = new int[rows][cols];
+		for (int row = 0; row < rows; row++) {
+			for (int col = 0; col < cols; col++) {
+				dataset[row][col] = get(row, col);
+			}
+		}
+		return dataset;
+	}
+
+	/**
+	 * @return the data arrangements collapsed and ordered for scoring one
+	 * arrangement at a time
+	 */
+	public WeightedOpponents getWeighted() {
+		WeightedOpponents w = weighted;
+		if (w == null) {
+			weighted = w = new WeightedOpponents(toArray());
+		}
+		return w;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getCols() {
+		return cols;
+	}
+
+	/**
+	 * convert an excel file to the binary file next to it
+	 * @param args - the excel file, the default one if none
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		String excelName = args.length > 0 ? args[0] : ReadExcel.getExcelName();
+		Path bin = binaryPath(Paths.get(excelName));
+		write(ReadExcel.parseExcel(excelName), bin);
+		System.out.println("converted " + excelName + " to " + bin);
+	}
+}
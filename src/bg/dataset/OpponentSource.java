@@ -0,0 +1,28 @@
+package bg.dataset;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A source of data arrangements that is read in chunks, so that pools too
+ * large to be held as int[][] can be scored with a fixed amount of memory.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public interface OpponentSource extends Closeable {
+
+	/**
+	 * @return the number of castles of every arrangement
+	 */
+	int getCols();
+
+	/**
+	 * read the next arrangements into a buffer, row by row
+	 * @param buffer - at least maxRows * getCols() ints
+	 * @param maxRows - max # of arrangements to read
+	 * @return the number of arrangements read, 0 at the end of the source
+	 * @throws IOException
+	 */
+	int read(int[] buffer, int maxRows) throws IOException;
+}
@@ -0,0 +1,204 @@
+package bg.dataset;
+
+import java.util.Arrays;
+
+/**
+ * A precomputed index of the data arrangements for fast scoring. For every
+ * castle and every number of soldiers, the table keeps a bitmask of the data
+ * arrangements that are beaten and of those that win at that castle, with
+ * one bit per data arrangement (78 arrangements fit in two longs).
+ *
+ * An arrangement is scored by adding up its per-castle masks with
+ * bit-sliced counters, so every bit position counts the castle wins or
+ * losses against one data arrangement, and comparing the counters
+ * bit-parallel. There is no branch on any data cell.
+ *
+ * Many arrangements are scored at once by scoreAll(), which goes through
+ * them in tiles of arrangements by blocks of data arrangements, so that the
+ * masks of a block stay in cache while every arrangement of the tile uses
+ * them, however many data arrangements there are.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class OutcomeTable {
+	private static final int CANDIDATE_TILE = 256; // # of arrangements scored together by scoreAll()
+	private static final int WORD_TILE = 64; // # of mask words, 64 data arrangements each, per block
+
+	private final int rows; // # of data arrangements
+	private final int cols; // # of castles
+	private final int words; // # of longs per mask
+	private final int values; // # of soldier counts per castle in the table
+
+	// masks of the data arrangements beaten/winning at castle col with v
+	// soldiers, at index ((col*values)+v)*words
+	private final long[] winMasks;
+	private final long[] loseMasks;
+
+	/**
+	 * build the table for the data arrangements
+	 * @param dataset - the data arrangements to be compared with
+	 */
+	public OutcomeTable(int[][] dataset) {
+		rows = dataset.length;
+		cols = rows == 0 ? 0 : dataset[0].length;
+		if (cols > 15) {
+			throw new IllegalArgumentException("too many castles for 4-bit counters: " + cols);
+		}
+		words = (rows + 63) >>> 6;
+
+		// one more value than the largest data value beats every arrangement
+		int max = 0;
+		for (int[] row : dataset) {
+			for (int value : row) {
+				max = Math.max(max, value);
+			}
+		}
+		values = max + 2;
+
+		// the data arrangements with exactly v soldiers at castle col, from
+		// which the masks are built as prefix and suffix unions
+		long[] equalMasks = new long[cols * values * words];
+		for (int row = 0; row < rows; row++) {
+			int word = row >>> 6;
+			long bit = 1L << (row & 63);
+			for (int col = 0; col < cols; col++) {
+				equalMasks[(col * values + dataset[row][col]) * words + word] |= bit;
+			}
+		}
+
+		winMasks = new long[cols * values * words];
+		loseMasks = new long[cols * values * words];
+		for (int col = 0; col < cols; col++) {
+			int base = col * values * words;
+			for (int v = 1; v < values; v++) {
+				for (int word = 0; word < words; word++) {
+					int index = base + v * words + word;
+					winMasks[index] = winMasks[index - words] | equalMasks[index - words];
+				}
+			}
+			for (int v = values - 2; v >= 0; v--) {
+				for (int word = 0; word < words; word++) {
+					int index = base + v * words + word;
+					loseMasks[index] = loseMasks[index + words] | equalMasks[index + words];
+				}
+			}
+		}
+	}
+
+	/**
+	 * compare this arrangement with the data arrangements
+	 * @param arr
+	 * @return the score, same as ReadExcel.compare(arr, dataset)
+	 */
+	public double score(int[] arr) {
+		return score(arr, 0);
+	}
+
+	/**
+	 * compare the arrangement stored at arr[offset..offset+cols) with the
+	 * data arrangements
+	 * @param arr
+	 * @param offset - index of the first castle in arr
+	 * @return the score, same as ReadExcel.compare(arr, dataset)
+	 */
+	public double score(int[] arr, int offset) {
+		return halfPoints(arr, offset) / 2.0;
+	}
+
+	/**
+	 * score count arrangements stored one after another, cols castles each
+	 * @param arrs - the arrangements from arrs[offset]
+	 * @param offset - index of the first castle of the first arrangement
+	 * @param count - # of arrangements
+	 * @param scores - the scores are written at scores[scoresOffset..scoresOffset+count)
+	 * @param scoresOffset - index of the first score
+	 */
+	public void scoreAll(int[] arrs, int offset, int count, double[] scores, int scoresOffset) {
+		int[] points = new int[Math.min(count, CANDIDATE_TILE)]; // half points of the tile
+
+		for (int first = 0; first < count; first += CANDIDATE_TILE) {
+			int tile = Math.min(CANDIDATE_TILE, count - first);
+			Arrays.fill(points, 0, tile, 0);
+
+			for (int fromWord = 0; fromWord < words; fromWord += WORD_TILE) {
+				int toWord = Math.min(words, fromWord + WORD_TILE);
+				for (int i = 0; i < tile; i++) {
+					int arrOffset = offset + (first + i) * cols;
+					for (int word = fromWord; word < toWord; word++) {
+						points[i] += wordPoints(arrs, arrOffset, word);
+					}
+				}
+			}
+
+			for (int i = 0; i < tile; i++) {
+				scores[scoresOffset + first + i] = points[i] / 2.0;
+			}
+		}
+	}
+
+	/**
+	 * @return twice the score, 2 for each win and 1 for each tie
+	 */
+	public int halfPoints(int[] arr, int offset) {
+		int points = 0;
+		for (int word = 0; word < words; word++) {
+			points += wordPoints(arr, offset, word);
+		}
+		return points;
+	}
+
+	/**
+	 * @return twice the score against the 64 data arrangements of a word
+	 */
+	private int wordPoints(int[] arr, int offset, int word) {
+		// bit-sliced 4-bit counters of castle wins w and losses l
+		long w0 = 0, w1 = 0, w2 = 0, w3 = 0;
+		long l0 = 0, l1 = 0, l2 = 0, l3 = 0;
+		long carry, mask;
+
+		for (int col = 0; col < cols; col++) {
+			int base = (col * values + Math.min(arr[offset + col], values - 1)) * words + word;
+
+			mask = winMasks[base];
+			carry = w0 & mask;
+			w0 ^= mask;
+			mask = w1 & carry;
+			w1 ^= carry;
+			carry = w2 & mask;
+			w2 ^= mask;
+			w3 ^= carry;
+
+			mask = loseMasks[base];
+			carry = l0 & mask;
+			l0 ^= mask;
+			mask = l1 & carry;
+			l1 ^= carry;
+			carry = l2 & mask;
+			l2 ^= mask;
+			l3 ^= carry;
+		}
+
+		// compare the counters from the highest bit down
+		long eq = ~(w3 ^ l3);
+		long gt = w3 & ~l3;
+		gt |= eq & w2 & ~l2;
+		eq &= ~(w2 ^ l2);
+		gt |= eq & w1 & ~l1;
+		eq &= ~(w1 ^ l1);
+		gt |= eq & w0 & ~l0;
+		eq &= ~(w0 ^ l0);
+
+		// the bits past the last data arrangement always tie
+		long valid = word == words - 1 && (rows & 63) != 0 ? (1L << (rows & 63)) - 1 : -1L;
+		return 2 * Long.bitCount(gt) + Long.bitCount(eq & valid);
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getCols() {
+		return cols;
+	}
+}
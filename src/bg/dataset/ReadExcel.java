@@ -1,9 +1,12 @@
 package bg.dataset;
 
+import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 import jxl.Cell;
 import jxl.CellType;
@@ -11,6 +14,10 @@ import jxl.Sheet;
 import jxl.Workbook;
 import jxl.read.biff.BiffException;
 
+import bg.checkpoint.Checkpoint;
+import bg.metrics.Metrics;
+import bg.search.Compositions;
+
 /**
  * a class that read in an excel file of Colonel Blotto scores
  *
@@ -22,6 +29,7 @@ public class ReadExcel {
 	private final static int END_ROW_INDEX = 78;
 	private final static int START_COL_INDEX = 6;
 	private final static int END_COL_INDEX = 15;
+	private final static long CHECKPOINT_MINUTES = 5; // the time between two checkpoints of findBest()
 	
 	
 	public ReadExcel() {
@@ -70,45 +78,10 @@ public class ReadExcel {
 		System.out.println("scores: " + compare(arr));
 	}
 	
-	// compare the arr to the scores in the excel file
+	// compare the arr to the scores in the excel file, read from its mapped binary file
+	// with the equal arrangements collapsed
 	public static double compare(int[] arr) throws IOException {
-		int win=0, tie=0, countwin, countlose;
-
-		File file = new File(excelName);
-		Workbook wb;
-
-		try {
-			wb = Workbook.getWorkbook(file);
-			Sheet sheet = wb.getSheet(0); // get sheet 0
-
-			// read in the score in each cell and print
-			for (int row = START_ROW_INDEX; row <= END_ROW_INDEX; row++) {
-				countwin = 0; // clear
-				countlose = 0; // clear
-
-				for (int col = START_COL_INDEX; col <= END_COL_INDEX; col++) {
-					Cell cell = sheet.getCell(col, row);
-					if (Integer.parseInt(cell.getContents()) < arr[col-START_COL_INDEX]){
-						countwin++;
-					} else if (Integer.parseInt(cell.getContents()) > arr[col-START_COL_INDEX]) {
-						countlose++;
-					}
-				}
-
-				if (countwin > countlose) {
-					win++;
-				} else if (countwin == countlose) {
-					tie ++;
-				} 
-			}
-
-		} catch (BiffException e){
-			e.printStackTrace();
-		} catch (IOException e) {
-			throw new IOException("cannot get workbook");
-		}
-
-		return win*1+(double)tie/2;
+		return OpponentData.load(excelName).getWeighted().score(arr);
 	}
 	
 	/**
@@ -144,10 +117,26 @@ public class ReadExcel {
 	}
 	
 	/**
-	 * load the arrangements as int array
+	 * load the arrangements as int array from the mapped binary file
 	 * @return
 	 */
 	public static int[][] getArray(){
+		try {
+			return OpponentData.load(excelName).toArray();
+		} catch (Exception e){
+			e.printStackTrace();
+		}
+		
+		return new int[END_ROW_INDEX-START_ROW_INDEX+1][END_COL_INDEX-START_COL_INDEX+1];
+	}
+	
+	/**
+	 * parse the arrangements in an excel file as int array
+	 * @param excelName
+	 * @return
+	 * @throws IOException
+	 */
+	static int[][] parseExcel(String excelName) throws IOException {
 		int[][] arrangementArr = new int[END_ROW_INDEX-START_ROW_INDEX+1][END_COL_INDEX-START_COL_INDEX+1];
 		File file = new File(excelName);
 		Workbook wb;
@@ -157,7 +146,7 @@ public class ReadExcel {
 			wb = Workbook.getWorkbook(file);
 			Sheet sheet = wb.getSheet(0); // get sheet 0
 			
-			// read in the score in each cell and print
+			// read in the score in each cell
 			for (int row = START_ROW_INDEX; row <= END_ROW_INDEX; row++) {
 				for (int col = START_COL_INDEX; col <= END_COL_INDEX; col++) {
 					cell = sheet.getCell(col, row);
@@ -166,20 +155,54 @@ public class ReadExcel {
 							Integer.parseInt(cell.getContents());
 				}
 			}
+			wb.close();
 			
-		} catch (Exception e){
-			e.printStackTrace();
+		} catch (BiffException | NumberFormatException e){
+			throw new IOException("cannot parse workbook " + excelName, e);
 		}
 		
 		return arrangementArr;
 	}
 	
+	public static String getExcelName() {
+		return excelName;
+	}
+	
 	/**
 	 * the brute force way to get the global maximum score
 	 * @throws IOException
 	 */
 	public void findBest() throws IOException {
-		int[][] arrangementArr = getArray(); // get data
+		findBest(null);
+	}
+	
+	/**
+	 * the brute force way to get the global maximum score, which writes a 
+	 * checkpoint every CHECKPOINT_MINUTES in the background and resumes from
+	 * it if there is one. The checkpoint keeps the last block of 
+	 * arrangements searched, a block being the arrangements with the same
+	 * soldiers at the first four castles.
+	 * @param checkpointPath - the checkpoint file, null for none
+	 * @throws IOException if the checkpoint cannot be read
+	 */
+	public void findBest(Path checkpointPath) throws IOException {
+		if (checkpointPath == null) {
+			exhaust(null);
+			return;
+		}
+		
+		try (Checkpoint checkpoint = new Checkpoint(checkpointPath, "findBest", CHECKPOINT_MINUTES, TimeUnit.MINUTES)) {
+			exhaust(checkpoint);
+		}
+	}
+	
+	/**
+	 * check every arrangement in lexicographic order
+	 * @param checkpoint - null for none
+	 * @throws IOException if the checkpoint cannot be read
+	 */
+	private void exhaust(Checkpoint checkpoint) throws IOException {
+		WeightedOpponents opponents = new WeightedOpponents(getArray()); // get data
 		
 		double best = 0, score;
 		int[] arr = new int[10];
@@ -187,10 +210,39 @@ public class ReadExcel {
 		int total = 100, j;
 		long iteration = 0;
 		
+		int done = -1, block; // the last block searched and this one, ((a*23+b)*23+c)*23+d
+		long reported = 0; // the iterations recorded in the metrics
+		
+		Metrics metrics = Metrics.get();
+		metrics.searchStarted("findBest", new Compositions(arr.length, total, 22).size());
+		
+		if (checkpoint != null) {
+			try (DataInputStream in = checkpoint.load()) {
+				if (in != null) {
+					done = in.readInt();
+					iteration = in.readLong();
+					best = in.readDouble();
+					for (int k = 0; k < bestArr.length; k++) {
+						bestArr[k] = in.readInt();
+					}
+					metrics.searched(iteration);
+					reported = iteration;
+					metrics.searchBest(best);
+					System.out.println("resumed from " + checkpoint.getPath() + " at iteration " + iteration
+							+ ", best:" + best + " :" + Arrays.toString(bestArr));
+				}
+			}
+		}
+		
 		for (int a = 0; a<=22; a++) {
 			for (int b = 0;b<=22; b++) {
 				for (int c = 0; c<=22; c++) {
 					for (int d = 0; d<=22; d++) {
+						block = ((a*23 + b)*23 + c)*23 + d;
+						if (block <= done) {
+							continue; // searched before the checkpoint
+						}
+						
 						for (int e = 0; (e<=22) && (e+d+c+b+a <= total); e++) {
 							for (int f = 0; (f<=22) && (f+e+d+c+b+a <= total); f++) {
 								for (int g = 0; (g<=22) && (g+f+e+d+c+b+a <= total); g++) {
@@ -202,17 +254,21 @@ public class ReadExcel {
 											}
 											
 											arr = new int[] {a,b,c,d,e,f,g,h,i,j};
-											score = compare(arr, arrangementArr);
+											score = opponents.score(arr);
 											
 											if (score > best) {
 												best = score;
 												bestArr = arr;
+												metrics.searchBest(best);
 												System.out.println("new best score:" + score);
 												System.out.println(" :" + Arrays.toString(bestArr));
 											}
 											
 											iteration++;
-											if (iteration % 10000000 == 0) { // print current iteration for every 5,000,000 trials
+											if (iteration % 10000000 == 0) { // print current iteration for every 10,000,000 trials
+												metrics.evaluated(iteration - reported);
+												metrics.searched(iteration - reported);
+												reported = iteration;
 												System.out.print("--iteration: " + iteration );
 												System.out.print(", current:" + score);
 												System.out.print(" :" + Arrays.toString(arr));
@@ -224,10 +280,38 @@ public class ReadExcel {
 								}
 							}
 						}
+						
+						if (checkpoint != null && checkpoint.isDue()) {
+							saveCheckpoint(checkpoint, block, iteration, best, bestArr);
+						}
 					}
 				}
 			}
 		}
+		
+		// the iterations after the last print
+		metrics.evaluated(iteration - reported);
+		metrics.searched(iteration - reported);
+		
+		if (checkpoint != null) {
+			saveCheckpoint(checkpoint, Integer.MAX_VALUE, iteration, best, bestArr); // the finished search
+		}
+	}
+	
+	/**
+	 * save the state of findBest()
+	 * @param block - the last block searched
+	 */
+	private static void saveCheckpoint(Checkpoint checkpoint, int block, long iteration, double best, int[] bestArr) {
+		int[] saved = bestArr.clone();
+		checkpoint.save(out -> {
+			out.writeInt(block);
+			out.writeLong(iteration);
+			out.writeDouble(best);
+			for (int gene : saved) {
+				out.writeInt(gene);
+			}
+		});
 	}
 
 }
@@ -0,0 +1,163 @@
+package bg.dataset;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Scores arrangements against pools of data arrangements of any size. The
+ * pool is read from an OpponentSource in chunks of a fixed number of rows
+ * into a few reusable buffers; the chunks are scored on worker threads while
+ * the next one is read, and the scores are accumulated across chunks. The
+ * memory used is the same whatever the size of the pool.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class StreamingScorer {
+	private final int chunkRows; // # of arrangements in a chunk
+	private final int threads; // # of worker threads
+
+	/**
+	 * @param chunkRows - # of data arrangements scored at once
+	 * @param threads - # of worker threads
+	 */
+	public StreamingScorer(int chunkRows, int threads) {
+		if (chunkRows <= 0 || threads <= 0) {
+			throw new IllegalArgumentException("invalid chunk size or threads");
+		}
+		this.chunkRows = chunkRows;
+		this.threads = threads;
+	}
+
+	/**
+	 * compare an arrangement with every data arrangement of a source
+	 * @param arr
+	 * @param source - read to its end, not closed
+	 * @return the score
+	 * @throws IOException
+	 */
+	public double score(int[] arr, OpponentSource source) throws IOException {
+		return score(new int[][] {arr}, source)[0];
+	}
+
+	/**
+	 * compare several arrangements with every data arrangement of a source in
+	 * one pass
+	 * @param candidates - the arrangements to score
+	 * @param source - read to its end, not closed
+	 * @return the score of each candidate
+	 * @throws IOException
+	 */
+	public double[] score(int[][] candidates, OpponentSource source) throws IOException {
+		int cols = source.getCols();
+		AtomicLongArray halfPoints = new AtomicLongArray(candidates.length);
+
+		// one buffer per worker and one being read
+		BlockingQueue<int[]> free = new ArrayBlockingQueue<int[]>(threads + 1);
+		for (int i = 0; i <= threads; i++) {
+			free.add(new int[chunkRows * cols]);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<?>> pending = new ArrayList<Future<?>>();
+		try {
+			int rows;
+			while (true) {
+				int[] buffer = free.take();
+				rows = source.read(buffer, chunkRows);
+				if (rows == 0) {
+					break;
+				}
+
+				int count = rows;
+				pending.add(executor.submit(() -> {
+					try {
+						for (int c = 0; c < candidates.length; c++) {
+							halfPoints.addAndGet(c, halfPoints(candidates[c], buffer, count, cols));
+						}
+					} finally {
+						free.add(buffer);
+					}
+				}));
+				for (Iterator<Future<?>> it = pending.iterator(); it.hasNext();) {
+					Future<?> future = it.next();
+					if (future.isDone()) {
+						future.get(); // fail fast
+						it.remove();
+					}
+				}
+			}
+
+			for (Future<?> future : pending) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while scoring", e);
+		} catch (ExecutionException e) {
+			throw new IOException("failed to score a chunk", e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+
+		double[] scores = new double[candidates.length];
+		for (int c = 0; c < candidates.length; c++) {
+			scores[c] = halfPoints.get(c) / 2.0;
+		}
+		return scores;
+	}
+
+	/**
+	 * compare an arrangement with a chunk of data arrangements
+	 * @return twice the score, 2 for each win and 1 for each tie
+	 */
+	private static long halfPoints(int[] arr, int[] chunk, int rows, int cols) {
+		long points = 0;
+		int margin;
+
+		for (int row = 0, base = 0; row < rows; row++, base += cols) {
+			margin = 0;
+			for (int col = 0; col < cols; col++) {
+				margin += Integer.signum(arr[col] - chunk[base + col]);
+			}
+			points += margin > 0 ? 2 : margin == 0 ? 1 : 0;
+		}
+		return points;
+	}
+
+	/**
+	 * score an arrangement against a CSV or binary pool
+	 * @param args - the pool file, then optionally the 10 numbers of soldiers
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.err.println("usage: StreamingScorer <pool.csv|pool.bin> [soldiers...]");
+			return;
+		}
+
+		int[] arr = {2, 1, 16, 17, 20, 19, 17, 2, 3, 3};
+		if (args.length > 1) {
+			arr = Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray();
+		}
+
+		Path path = Paths.get(args[0]);
+		StreamingScorer scorer = new StreamingScorer(1 << 16, Runtime.getRuntime().availableProcessors());
+		try (OpponentSource source = path.toString().endsWith(".csv")
+				? new CsvOpponentSource(path) : new BinaryOpponentSource(path)) {
+			System.out.println("scores: " + scorer.score(arr, source));
+		}
+	}
+}
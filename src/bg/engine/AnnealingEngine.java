@@ -0,0 +1,87 @@
+package bg.engine;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.DoubleSupplier;
+
+import bg.dataset.OutcomeTable;
+import bg.dataset.ReadExcel;
+import bg.geneticalgorithm.Chromosome;
+import bg.search.Incumbent;
+
+/**
+ * Simulated annealing over the arrangements: a neighbour moves one soldier
+ * from a random castle to another as Chromosome.mutation() does. A
+ * neighbour as good is always taken, and a worse one with probability
+ * exp(-loss/temperature). The temperature falls geometrically from
+ * START_TEMPERATURE to END_TEMPERATURE as the budget is spent.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class AnnealingEngine implements SearchEngine {
+	private static final double START_TEMPERATURE = 2.0; // in points, a few castle outcomes
+	private static final double END_TEMPERATURE = 0.05;
+	private static final int COOLING_INTERVAL = 1024; // # of moves between two temperature updates
+
+	private final OutcomeTable table;
+
+	/**
+	 * anneal against the excel data
+	 */
+	public AnnealingEngine() {
+		this(ReadExcel.getArray());
+	}
+
+	public AnnealingEngine(int[][] dataset) {
+		this.table = new OutcomeTable(dataset);
+	}
+
+	@Override
+	public String getName() {
+		return "SA";
+	}
+
+	@Override
+	public Incumbent search(Budget budget, long seed) {
+		SplittableRandom stream = new SplittableRandom(seed);
+		DoubleSupplier random = stream::nextDouble;
+
+		int[] current = new int[table.getCols()];
+		int[] candidate = new int[current.length];
+		Chromosome.randomGenes(current, 0, random);
+		double score = table.score(current);
+		int[] best = current.clone();
+		double bestScore = score;
+		budget.spend(1, bestScore);
+
+		double temperature = START_TEMPERATURE;
+		for (long move = 1; !budget.isExhausted(); move++) {
+			if (move % COOLING_INTERVAL == 0) {
+				temperature = START_TEMPERATURE * Math.pow(END_TEMPERATURE / START_TEMPERATURE, budget.getProgress());
+			}
+
+			System.arraycopy(current, 0, candidate, 0, current.length);
+			Chromosome.mutation(candidate, 0, 1, random);
+			if (Arrays.equals(candidate, current)) {
+				continue; // no soldier moved
+			}
+
+			double next = table.score(candidate);
+			if (next >= score || random.getAsDouble() < Math.exp((next - score) / temperature)) {
+				int[] temp = current;
+				current = candidate;
+				candidate = temp;
+				score = next;
+
+				if (score > bestScore) {
+					bestScore = score;
+					System.arraycopy(current, 0, best, 0, best.length);
+				}
+			}
+			budget.spend(1, bestScore);
+		}
+
+		return new Incumbent(bestScore, best);
+	}
+}
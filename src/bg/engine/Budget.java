@@ -0,0 +1,114 @@
+package bg.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The budget of one run of a SearchEngine, either a number of arrangements
+ * scored or a wall time, counted from the creation of the budget. The
+ * engine spends the budget as it scores arrangements, and the budget keeps
+ * the best score reached after every million of them, so that engines can
+ * be compared on cost against quality.
+ *
+ * A budget is spent by one run on one thread.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public final class Budget {
+	public static final long TRACE_STEP = 1_000_000; // # of arrangements between two points of the trace
+
+	private final long maxEvaluations; // Long.MAX_VALUE if limited by time
+	private final long maxNanos; // Long.MAX_VALUE if limited by evaluations
+	private final long start = System.nanoTime();
+
+	private long evaluations; // # of arrangements scored
+	private double best = Double.NaN; // the best score reached
+	private double[] trace = new double[16]; // trace[k]: the best score after (k+1) million arrangements
+	private int points; // # of points in the trace
+
+	private Budget(long maxEvaluations, long maxNanos) {
+		if (maxEvaluations <= 0 || maxNanos <= 0) {
+			throw new IllegalArgumentException("invalid budget");
+		}
+		this.maxEvaluations = maxEvaluations;
+		this.maxNanos = maxNanos;
+	}
+
+	/**
+	 * @param count - # of arrangements to score
+	 * @return a budget of count arrangements
+	 */
+	public static Budget evaluations(long count) {
+		return new Budget(count, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param time - the wall time to search
+	 * @param unit - the unit of time
+	 * @return a budget of the time from now
+	 */
+	public static Budget time(long time, TimeUnit unit) {
+		return new Budget(Long.MAX_VALUE, unit.toNanos(time));
+	}
+
+	/**
+	 * spend arrangements scored
+	 * @param count - # of arrangements scored since the last call
+	 * @param bestScore - the best score of the engine so far
+	 */
+	public void spend(long count, double bestScore) {
+		if (Double.isNaN(best) || bestScore > best) {
+			best = bestScore;
+		}
+
+		evaluations += count;
+		while ((points + 1) * TRACE_STEP <= evaluations) {
+			if (points == trace.length) {
+				trace = Arrays.copyOf(trace, points * 2);
+			}
+			trace[points++] = best;
+		}
+	}
+
+	/**
+	 * @return whether the budget is spent
+	 */
+	public boolean isExhausted() {
+		return evaluations >= maxEvaluations
+				|| (maxNanos != Long.MAX_VALUE && System.nanoTime() - start >= maxNanos);
+	}
+
+	/**
+	 * @return the share of the budget spent, in [0, 1]
+	 */
+	public double getProgress() {
+		double progress = (double)evaluations / maxEvaluations;
+		if (maxNanos != Long.MAX_VALUE) {
+			progress = Math.max(progress, (double)(System.nanoTime() - start) / maxNanos);
+		}
+		return Math.min(1, progress);
+	}
+
+	public long getEvaluations() {
+		return evaluations;
+	}
+
+	public long getElapsedNanos() {
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * @return the best score reached so far
+	 */
+	public double getBest() {
+		return best;
+	}
+
+	/**
+	 * @return the best score after every million arrangements scored
+	 */
+	public double[] getTrace() {
+		return Arrays.copyOf(trace, points);
+	}
+}
@@ -0,0 +1,83 @@
+package bg.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import bg.search.Incumbent;
+
+/**
+ * Runs every engine on the same budget of arrangements scored with several
+ * seeds, and reports the average best score each engine reached after
+ * every million arrangements, so that the cheapest engine for a result can
+ * be picked.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class EngineHarness {
+	private final List<SearchEngine> engines = new ArrayList<SearchEngine>();
+
+	public EngineHarness add(SearchEngine engine) {
+		engines.add(engine);
+		return this;
+	}
+
+	/**
+	 * run every engine and print the best score per million arrangements
+	 * @param millions - the budget of each run in millions of arrangements
+	 * @param runs - # of runs of each engine, with seeds 1..runs
+	 */
+	public void compare(int millions, int runs) {
+		StringBuilder header = new StringBuilder(String.format("%-10s", "engine"));
+		for (int m = 1; m <= millions; m++) {
+			header.append(String.format("%7s", m + "M"));
+		}
+		header.append(String.format("%9s %9s  %s", "seconds", "M/s", "best"));
+		System.out.println(header);
+
+		for (SearchEngine engine : engines) {
+			double[] average = new double[millions];
+			long nanos = 0, evaluations = 0;
+			Incumbent best = null;
+
+			for (int run = 1; run <= runs; run++) {
+				Budget budget = Budget.evaluations(millions * Budget.TRACE_STEP);
+				Incumbent found = engine.search(budget, run);
+				best = best == null ? found : Incumbent.better(best, found);
+
+				double[] trace = budget.getTrace();
+				for (int m = 0; m < millions; m++) {
+					average[m] += trace[Math.min(m, trace.length - 1)] / runs;
+				}
+				nanos += budget.getElapsedNanos();
+				evaluations += budget.getEvaluations();
+			}
+
+			StringBuilder line = new StringBuilder(String.format("%-10s", engine.getName()));
+			for (double score : average) {
+				line.append(String.format(Locale.ROOT, "%7.2f", score));
+			}
+			line.append(String.format(Locale.ROOT, "%9.1f %9.2f  %s : %s", nanos / 1e9, evaluations * 1e3 / nanos,
+					best.getScore(), Arrays.toString(best.getGenes())));
+			System.out.println(line);
+		}
+	}
+
+	/**
+	 * @param args - the budget in millions of arrangements, 10 if none, and
+	 * the runs of each engine, 3 if none
+	 */
+	public static void main(String[] args) {
+		int millions = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+		int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+		new EngineHarness()
+				.add(new GeneticEngine(1500))
+				.add(new GeneticEngine(100))
+				.add(new AnnealingEngine())
+				.add(new TabuEngine())
+				.compare(millions, runs);
+	}
+}
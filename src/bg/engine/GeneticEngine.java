@@ -0,0 +1,55 @@
+package bg.engine;
+
+import bg.geneticalgorithm.GeneticAlgorithm;
+import bg.metrics.GenerationSnapshot;
+import bg.metrics.Metrics;
+import bg.search.Incumbent;
+
+/**
+ * The genetic algorithm as a SearchEngine: one population evolving on one
+ * thread until the budget is spent, a generation at a time.
+ *
+ * The arrangements scored are taken from the Metrics, so the engine must
+ * not run next to other searches in the same JVM.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class GeneticEngine implements SearchEngine {
+	private final int size; // population size
+
+	/**
+	 * @param size - population size
+	 */
+	public GeneticEngine(int size) {
+		this.size = size;
+	}
+
+	@Override
+	public String getName() {
+		return "GA(" + size + ")";
+	}
+
+	@Override
+	public Incumbent search(Budget budget, long seed) {
+		Metrics metrics = Metrics.get();
+		long evaluated = metrics.getEvaluations();
+
+		try (GeneticAlgorithm ga = new GeneticAlgorithm(size, 1, seed)) {
+			GenerationSnapshot snapshot = ga.snapshot();
+			while (true) {
+				long now = metrics.getEvaluations();
+				budget.spend(now - evaluated, snapshot.getBestEverScore());
+				evaluated = now;
+				if (budget.isExhausted()) {
+					break;
+				}
+
+				ga.evolve();
+				snapshot = ga.snapshot();
+			}
+
+			return new Incumbent(snapshot.getBestEverScore(), snapshot.getBestEver());
+		}
+	}
+}
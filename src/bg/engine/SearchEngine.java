@@ -0,0 +1,28 @@
+package bg.engine;
+
+import bg.search.Incumbent;
+
+/**
+ * An optimizer of the arrangement of 100 soldiers in 10 castles against the
+ * data arrangements, run until its budget is spent, so that optimizers can
+ * be compared by the EngineHarness on the same budget.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public interface SearchEngine {
+
+	/**
+	 * @return the name of the engine in reports
+	 */
+	String getName();
+
+	/**
+	 * search until the budget is spent, spending it for every arrangement
+	 * scored
+	 * @param budget - the budget of this run
+	 * @param seed - the seed of all random numbers
+	 * @return the best arrangement found
+	 */
+	Incumbent search(Budget budget, long seed);
+}
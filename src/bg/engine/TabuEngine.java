@@ -0,0 +1,124 @@
+package bg.engine;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import bg.dataset.OutcomeTable;
+import bg.dataset.ReadExcel;
+import bg.geneticalgorithm.Chromosome;
+import bg.search.Incumbent;
+
+/**
+ * Tabu search over the arrangements. The neighbours of an arrangement are
+ * all the moves of one soldier from one castle to another, the moves of
+ * Chromosome.mutation(). Every step scores all of them in one pass of
+ * OutcomeTable.scoreAll() and takes the best one that is not tabu, even if
+ * it is worse. For TENURE steps after a move, the castle left may not gain
+ * a soldier and the castle joined may not lose one, unless the move beats
+ * the best arrangement found. Most moves tie on the plateaus of the
+ * scores, so after STALL_STEPS steps without a new best the search restarts
+ * from the best arrangement with RESTART_MOVES soldiers moved.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class TabuEngine implements SearchEngine {
+	private static final int TENURE = 5; // # of steps the castles of a move may not be moved back
+	private static final int STALL_STEPS = 200; // # of steps without a new best before a restart
+	private static final int RESTART_MOVES = 10; // # of soldiers moved from the best to restart
+
+	private final OutcomeTable table;
+
+	/**
+	 * search against the excel data
+	 */
+	public TabuEngine() {
+		this(ReadExcel.getArray());
+	}
+
+	public TabuEngine(int[][] dataset) {
+		this.table = new OutcomeTable(dataset);
+	}
+
+	@Override
+	public String getName() {
+		return "Tabu";
+	}
+
+	@Override
+	public Incumbent search(Budget budget, long seed) {
+		SplittableRandom random = new SplittableRandom(seed);
+		int cols = table.getCols();
+
+		int[] current = new int[cols];
+		Chromosome.randomGenes(current, 0, random::nextDouble);
+		int[] best = current.clone();
+		double bestScore = table.score(current);
+		budget.spend(1, bestScore);
+
+		int[] neighbours = new int[cols * (cols - 1) * cols]; // the genes of every move
+		int[] from = new int[cols * (cols - 1)]; // the castle a soldier leaves
+		int[] to = new int[cols * (cols - 1)]; // the castle it joins
+		double[] scores = new double[cols * (cols - 1)];
+		long[] joinTabu = new long[cols]; // the step until which a castle may not gain a soldier
+		long[] leaveTabu = new long[cols]; // the step until which a castle may not lose a soldier
+
+		long lastImproved = 0; // the step of the last new best
+		for (long step = 0; !budget.isExhausted(); step++) {
+			if (step - lastImproved >= STALL_STEPS) {
+				// restart near the best, as the plateaus hold the search
+				System.arraycopy(best, 0, current, 0, cols);
+				Chromosome.mutation(current, 0, RESTART_MOVES, random::nextDouble);
+				Arrays.fill(joinTabu, 0);
+				Arrays.fill(leaveTabu, 0);
+				lastImproved = step;
+			}
+			
+			int count = 0;
+			for (int i = 0; i < cols; i++) {
+				if (current[i] == 0) {
+					continue;
+				}
+				for (int j = 0; j < cols; j++) {
+					if (i != j) {
+						int offset = count * cols;
+						System.arraycopy(current, 0, neighbours, offset, cols);
+						neighbours[offset + i]--;
+						neighbours[offset + j]++;
+						from[count] = i;
+						to[count] = j;
+						count++;
+					}
+				}
+			}
+			table.scoreAll(neighbours, 0, count, scores, 0);
+
+			// the best move allowed, the first of the ties after a random one
+			int move = -1;
+			int first = random.nextInt(count);
+			for (int k = 0; k < count; k++) {
+				int n = (first + k) % count;
+				boolean allowed = (leaveTabu[from[n]] <= step && joinTabu[to[n]] <= step) || scores[n] > bestScore;
+				if (allowed && (move < 0 || scores[n] > scores[move])) {
+					move = n;
+				}
+			}
+			if (move < 0) {
+				move = first; // every move is tabu
+			}
+
+			current[from[move]]--;
+			current[to[move]]++;
+			joinTabu[from[move]] = step + TENURE;
+			leaveTabu[to[move]] = step + TENURE;
+			if (scores[move] > bestScore) {
+				bestScore = scores[move];
+				System.arraycopy(current, 0, best, 0, cols);
+				lastImproved = step;
+			}
+			budget.spend(count, bestScore);
+		}
+
+		return new Incumbent(bestScore, best);
+	}
+}
@@ -2,8 +2,13 @@ package bg.geneticalgorithm;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.DoubleSupplier;
 
+import bg.dataset.OutcomeTable;
 import bg.dataset.ReadExcel;
+import bg.metrics.Metrics;
 
 /**
  * The chromosome for the genetic algorithm that represent the arrangement of
@@ -14,26 +19,51 @@ import bg.dataset.ReadExcel;
  */
 public class Chromosome {
 	private static final int MAX_GENES = 100; // a total of 100 soldiers
-	private static final int GENE_SIZE = 10; // # of castles
+	static final int GENE_SIZE = 10; // # of castles
 	private static final int MIN_CROSS_SIZE = 2; // # of min crosses for crossover
 	
 	private static final int[][] SCORES = ReadExcel.getArray();
+	static final OutcomeTable TABLE = new OutcomeTable(SCORES);
+	
+	// the score cache of each thread, null if caching is disabled
+	private static volatile ThreadLocal<FitnessCache> caches;
+	private static final List<FitnessCache> ALL_CACHES = new CopyOnWriteArrayList<FitnessCache>();
 	
 	private int[] genes = new int[GENE_SIZE]; // store the arrangement as int array
 	private double adaptability; // store the score of this arrangement
 	
+	private static final DoubleSupplier RANDOM = Math::random; // the default random source
+	
 	/**
 	 * default constructor: create a random arrangement
 	 */
 	public Chromosome() {
-		int random;
+		this(RANDOM);
+	}
+	
+	/**
+	 * create a random arrangement
+	 * @param random - the source of random numbers in [0, 1)
+	 */
+	public Chromosome(DoubleSupplier random) {
+		randomGenes(genes, 0, random);
+		quickCalcAdap();
+	}
+	
+	/**
+	 * assign each of the soldiers to a random castle in place
+	 * @param genes - the genes, cleared at genes[offset..offset+10)
+	 * @param offset - index of the first castle
+	 * @param random - the source of random numbers in [0, 1)
+	 */
+	public static void randomGenes(int[] genes, int offset, DoubleSupplier random) {
+		int pos;
 		
+		Arrays.fill(genes, offset, offset + GENE_SIZE, 0);
 		for (int i = 0; i < MAX_GENES; i ++) {
-			random = (int)(Math.random()*GENE_SIZE);
-			genes[random] ++;
+			pos = (int)(random.getAsDouble()*GENE_SIZE);
+			genes[offset + pos] ++;
 		}
-		
-		quickCalcAdap();
 	}
 	
 	/**
@@ -50,10 +80,29 @@ public class Chromosome {
 		quickCalcAdap();
 	}
 	
+	/**
+	 * copy genes without scoring them
+	 * @param genes
+	 * @param adaptability - the score, NaN until scoreAll()
+	 */
+	private Chromosome(int[] genes, double adaptability) {
+		System.arraycopy(genes, 0, this.genes, 0, GENE_SIZE);
+		this.adaptability = adaptability;
+	}
+	
+	/**
+	 * copy a chromosome together with its score
+	 * @param chr
+	 */
+	private Chromosome(Chromosome chr) {
+		this(chr.genes, chr.adaptability);
+	}
+	
 	/**
 	 * calculate the adaptability of this chromosome 
 	 */
 	public void calcAdap() {
+		Metrics.get().evaluated();
 		try {
 			this.adaptability = ReadExcel.compare(genes);
 		} catch (IOException e) {
@@ -65,7 +114,101 @@ public class Chromosome {
 	 * a quicker way to calculate the adaptability of this chromosome 
 	 */
 	public void quickCalcAdap() {
-		this.adaptability = ReadExcel.compare(genes, SCORES);
+		FitnessCache cache = getCache();
+		if (cache == null) {
+			Metrics.get().evaluated();
+			this.adaptability = TABLE.score(genes);
+			return;
+		}
+		
+		this.adaptability = cache.get(genes, 0);
+		if (Double.isNaN(adaptability)) {
+			Metrics.get().evaluated(); // only a miss is evaluated
+			this.adaptability = TABLE.score(genes);
+			cache.put(genes, 0, adaptability);
+		}
+	}
+	
+	/**
+	 * score the chromosomes left unscored by unscoredCrossover() in one pass
+	 * of OutcomeTable.scoreAll(), taking the cached scores as they are
+	 * @param chrs
+	 * @param from - index of the first chromosome
+	 * @param to - index after the last chromosome
+	 */
+	static void scoreAll(List<Chromosome> chrs, int from, int to) {
+		FitnessCache cache = getCache();
+		int[] batch = new int[(to - from) * GENE_SIZE]; // the genes of the chromosomes to score
+		Chromosome[] scored = new Chromosome[to - from];
+		int count = 0;
+		
+		for (int i = from; i < to; i++) {
+			Chromosome chr = chrs.get(i);
+			if (!Double.isNaN(chr.adaptability)) {
+				continue;
+			}
+			if (cache != null) {
+				chr.adaptability = cache.get(chr.genes, 0);
+				if (!Double.isNaN(chr.adaptability)) {
+					continue;
+				}
+			}
+			System.arraycopy(chr.genes, 0, batch, count * GENE_SIZE, GENE_SIZE);
+			scored[count++] = chr;
+		}
+		
+		double[] scores = new double[count];
+		TABLE.scoreAll(batch, 0, count, scores, 0);
+		for (int i = 0; i < count; i++) {
+			scored[i].adaptability = scores[i];
+			if (cache != null) {
+				cache.put(scored[i].genes, 0, scores[i]);
+			}
+		}
+		Metrics.get().evaluated(count); // the cache hits are not evaluations
+	}
+	
+	/**
+	 * cache the scores of evaluated arrangements, with a separate cache for 
+	 * each thread
+	 * @param capacity - max # of scores each cache keeps
+	 * @param policy - the eviction policy
+	 */
+	public static void enableCache(int capacity, FitnessCache.Policy policy) {
+		ALL_CACHES.clear();
+		caches = ThreadLocal.withInitial(() -> {
+			FitnessCache cache = new FitnessCache(capacity, policy);
+			ALL_CACHES.add(cache);
+			return cache;
+		});
+	}
+	
+	/**
+	 * stop caching the scores
+	 */
+	public static void disableCache() {
+		caches = null;
+		ALL_CACHES.clear();
+	}
+	
+	/**
+	 * @return the score cache of this thread, or null if caching is disabled
+	 */
+	public static FitnessCache getCache() {
+		ThreadLocal<FitnessCache> local = caches;
+		return local == null ? null : local.get();
+	}
+	
+	/**
+	 * @return the share of cache lookups that were hits over all threads
+	 */
+	public static double getCacheHitRate() {
+		long hits = 0, misses = 0;
+		for (FitnessCache cache : ALL_CACHES) {
+			hits += cache.getHits();
+			misses += cache.getMisses();
+		}
+		return hits + misses == 0 ? 0 : (double)hits / (hits + misses);
 	}
 	
 	/**
@@ -81,7 +224,7 @@ public class Chromosome {
 //		}
 //		
 		// create a copy of the input chromosome
-		Chromosome copy = new Chromosome(chr.getGenes());
+		Chromosome copy = new Chromosome(chr);
 		
 		return copy;
 	}
@@ -91,26 +234,50 @@ public class Chromosome {
 	 * @param num - number of soldiers to change position
 	 */
 	public void mutation(int num) {
+		mutation(num, RANDOM);
+	}
+	
+	/**
+	 * randomly choose num soldiers to be reassigned a random castle
+	 * @param num - number of soldiers to change position
+	 * @param random - the source of random numbers in [0, 1)
+	 */
+	public void mutation(int num, DoubleSupplier random) {
 		// check validity
 		if (num <= 0) {
 			return;
 		}
 		
+		if (Double.isNaN(adaptability)) {
+			mutation(genes, 0, num, random); // scored later by scoreAll()
+			return;
+		}
+		
+		mutation(genes, 0, num, random);
+		quickCalcAdap();
+	}
+	
+	/**
+	 * randomly choose num soldiers to be reassigned a random castle in place
+	 * @param genes - the genes at genes[offset..offset+10)
+	 * @param offset - index of the first castle
+	 * @param num - number of soldiers to change position
+	 * @param random - the source of random numbers in [0, 1)
+	 */
+	public static void mutation(int[] genes, int offset, int num, DoubleSupplier random) {
 		int pos; // the index of gene to mutate
 		for (int i = 0; i < num; i ++) {
-			pos = (int)(Math.random() * GENE_SIZE); // randomly locate a castle
+			pos = offset + (int)(random.getAsDouble() * GENE_SIZE); // randomly locate a castle
 			
 			// skip if the soldier is 0 at this castle
 			if (genes[pos] <= 0) {
 				continue;
 			} else {
 				genes[pos]--;
-				pos = (int)(Math.random() * GENE_SIZE);
+				pos = offset + (int)(random.getAsDouble() * GENE_SIZE);
 				genes[pos]++;
 			}
 		}
-		
-		quickCalcAdap();
 	}
 	
 	/**
@@ -119,25 +286,78 @@ public class Chromosome {
 	 * @return a child chromosome for the next generation
 	 */
 	public Chromosome crossover() {
-		Chromosome child = clone(this); // copy the parent first
+		return crossover(RANDOM);
+	}
+	
+	/**
+	 * One chromosome reproduces a new chromosome by randomly interchanging
+	 * genes/soldiers at two index/castles by a random number of times 
+	 * @param random - the source of random numbers in [0, 1)
+	 * @return a child chromosome for the next generation
+	 */
+	public Chromosome crossover(DoubleSupplier random) {
+		Chromosome child = new Chromosome(genes, Double.NaN); // copy the parent first
+		crossover(child.genes, 0, random);
+		child.quickCalcAdap();
+		
+		return child;
+	}
+	
+	/**
+	 * crossover without scoring the child, so that the children of a
+	 * generation are scored together by scoreAll()
+	 * @param random - the source of random numbers in [0, 1)
+	 * @return an unscored child chromosome for the next generation
+	 */
+	Chromosome unscoredCrossover(DoubleSupplier random) {
+		Chromosome child = new Chromosome(genes, Double.NaN);
+		crossover(child.genes, 0, random);
 		
-		int time = Math.abs((int)(Math.random()*GENE_SIZE) - (int)(Math.random()*GENE_SIZE))
+		return child;
+	}
+	
+	/**
+	 * create a random arrangement without scoring it, so that it is scored
+	 * with its generation by scoreAll() or by a Tournament
+	 * @param random - the source of random numbers in [0, 1)
+	 * @return an unscored chromosome
+	 */
+	static Chromosome unscored(DoubleSupplier random) {
+		Chromosome chr = new Chromosome(new int[GENE_SIZE], Double.NaN);
+		randomGenes(chr.genes, 0, random);
+		return chr;
+	}
+	
+	/**
+	 * copy genes without scoring them
+	 * @param genes
+	 * @return an unscored chromosome
+	 */
+	static Chromosome unscored(int[] genes) {
+		return new Chromosome(genes, Double.NaN);
+	}
+	
+	/**
+	 * randomly interchange genes/soldiers at two index/castles by a random 
+	 * number of times in place
+	 * @param genes - the genes at genes[offset..offset+10)
+	 * @param offset - index of the first castle
+	 * @param random - the source of random numbers in [0, 1)
+	 */
+	static void crossover(int[] genes, int offset, DoubleSupplier random) {
+		int time = Math.abs((int)(random.getAsDouble()*GENE_SIZE) - (int)(random.getAsDouble()*GENE_SIZE))
 				+ MIN_CROSS_SIZE; // a random time of interchanges that is at least MIN_CROSS_SIZE
 		int pos1; // the index of the genes to be interchanged
 		int pos2; // the index of the genes to be interchanged
 		int temp; // store the temp gene
 		
 		for (int i = 0; i < time; i++) {
-			pos1 = (int)(Math.random()*GENE_SIZE);
-			pos2 = (int)(Math.random()*GENE_SIZE);
-			temp = child.genes[pos1];
-			child.genes[pos1] = child.genes[pos2];
-			child.genes[pos2] = temp;
+			pos1 = offset + (int)(random.getAsDouble()*GENE_SIZE);
+			pos2 = offset + (int)(random.getAsDouble()*GENE_SIZE);
+			temp = genes[pos1];
+			genes[pos1] = genes[pos2];
+			genes[pos2] = temp;
 		}
-		
-		child.quickCalcAdap();
-		
-		return child;
 	}
 	
 	/**
@@ -155,6 +375,15 @@ public class Chromosome {
 	public double getAdaptability() {
 		return adaptability;
 	}
+	
+	/**
+	 * set a score that is not against the data arrangements, like the
+	 * score of the round robin of co-evolution
+	 * @param adaptability
+	 */
+	void setAdaptability(double adaptability) {
+		this.adaptability = adaptability;
+	}
 
 	public static void main(String[] args) {
 		Chromosome a = new Chromosome();
@@ -0,0 +1,199 @@
+package bg.geneticalgorithm;
+
+import java.util.Arrays;
+
+/**
+ * A bounded cache of the scores of arrangements that were already
+ * evaluated. The genes are packed into a long for the first 9 castles and
+ * an int for the last one by PackedGenes, and the table is open-addressed
+ * in sets of SET_SIZE slots with primitive arrays only, so a lookup does
+ * not box or allocate anything. When a set is full, a slot is evicted by
+ * the configured policy.
+ *
+ * The cache is not thread safe; every thread should use its own.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class FitnessCache {
+	private static final int SET_SIZE = 8; // # of slots a key may be stored in
+	private static final int EMPTY = -1; // tail of an empty slot
+
+	/**
+	 * the way to choose the slot to evict from a full set
+	 */
+	public enum Policy {
+		CLOCK, // evict the first slot not referenced since the hand passed it
+		LRU // evict the slot least recently used
+	}
+
+	private final Policy policy;
+	private final int sets; // # of sets, a power of 2
+
+	private final long[] heads; // packed genes of the first castles
+	private final int[] tails; // gene of the last castle, EMPTY if the slot is free
+	private final double[] scores;
+	private final int[] stamps; // LRU: last use; CLOCK: 1 if referenced
+	private final byte[] hands; // CLOCK: next slot to check in each set
+	private int tick; // LRU: the clock of uses
+
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * @param capacity - max # of scores to keep, rounded up to a power of 2
+	 * @param policy - the eviction policy
+	 */
+	public FitnessCache(int capacity, Policy policy) {
+		if (capacity <= 0 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("invalid cache capacity: " + capacity);
+		}
+
+		int slots = Math.max(SET_SIZE, Integer.highestOneBit(capacity - 1) << 1);
+		this.policy = policy;
+		this.sets = slots / SET_SIZE;
+
+		heads = new long[slots];
+		tails = new int[slots];
+		scores = new double[slots];
+		stamps = new int[slots];
+		hands = new byte[sets];
+		clear();
+	}
+
+	/**
+	 * look up the score of the genes at genes[offset..offset+10)
+	 * @return the score, or NaN if it is not in the cache
+	 */
+	public double get(int[] genes, int offset) {
+		if (!PackedGenes.packable(genes, offset)) {
+			misses++;
+			return Double.NaN;
+		}
+
+		long head = PackedGenes.head(genes, offset);
+		int tail = PackedGenes.tail(genes, offset);
+		int base = set(head, tail) * SET_SIZE;
+
+		for (int slot = base; slot < base + SET_SIZE; slot++) {
+			if (tails[slot] == tail && heads[slot] == head) {
+				hits++;
+				stamps[slot] = policy == Policy.LRU ? ++tick : 1;
+				return scores[slot];
+			}
+		}
+
+		misses++;
+		return Double.NaN;
+	}
+
+	/**
+	 * store the score of the genes at genes[offset..offset+10)
+	 */
+	public void put(int[] genes, int offset, double score) {
+		if (!PackedGenes.packable(genes, offset)) {
+			return;
+		}
+
+		long head = PackedGenes.head(genes, offset);
+		int tail = PackedGenes.tail(genes, offset);
+		int set = set(head, tail);
+		int base = set * SET_SIZE;
+		int free = -1;
+
+		for (int slot = base; slot < base + SET_SIZE; slot++) {
+			if (tails[slot] == tail && heads[slot] == head) {
+				scores[slot] = score;
+				return;
+			} else if (free < 0 && tails[slot] == EMPTY) {
+				free = slot;
+			}
+		}
+
+		if (free < 0) {
+			free = victim(set);
+			evictions++;
+		}
+
+		heads[free] = head;
+		tails[free] = tail;
+		scores[free] = score;
+		stamps[free] = policy == Policy.LRU ? ++tick : 0;
+	}
+
+	/**
+	 * choose the slot to evict from a full set
+	 */
+	private int victim(int set) {
+		int base = set * SET_SIZE;
+
+		if (policy == Policy.LRU) {
+			int oldest = base;
+			for (int slot = base + 1; slot < base + SET_SIZE; slot++) {
+				if (stamps[slot] - stamps[oldest] < 0) { // overflow-safe order
+					oldest = slot;
+				}
+			}
+			return oldest;
+		}
+
+		// sweep the hand, clearing referenced slots, until one is not referenced
+		while (true) {
+			int slot = base + hands[set];
+			hands[set] = (byte)((hands[set] + 1) % SET_SIZE);
+			if (stamps[slot] == 0) {
+				return slot;
+			}
+			stamps[slot] = 0;
+		}
+	}
+
+	/**
+	 * remove every score and reset the counters
+	 */
+	public void clear() {
+		Arrays.fill(tails, EMPTY);
+		Arrays.fill(stamps, 0);
+		Arrays.fill(hands, (byte)0);
+		tick = 0;
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	/**
+	 * @return the set a packed key belongs to
+	 */
+	private int set(long head, int tail) {
+		return PackedGenes.hash(head, tail) & (sets - 1);
+	}
+
+	public int getCapacity() {
+		return tails.length;
+	}
+
+	public Policy getPolicy() {
+		return policy;
+	}
+
+	public long getHits() {
+		return hits;
+	}
+
+	public long getMisses() {
+		return misses;
+	}
+
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return the share of lookups that were hits, 0 if there was none
+	 */
+	public double getHitRate() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double)hits / lookups;
+	}
+}
@@ -0,0 +1,262 @@
+package bg.geneticalgorithm;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.DoubleSupplier;
+
+import bg.dataset.OutcomeTable;
+import bg.metrics.GenerationSnapshot;
+import bg.metrics.Metrics;
+import bg.metrics.ProgressReporter;
+
+/**
+ * The genetic algorithm on a population stored as struct of arrays instead
+ * of Chromosome objects: the genes of all chromosomes in one flat int array,
+ * 10 genes per chromosome, and their adaptabilities in a double array. The
+ * next generation is built in a second pair of arrays and the two are
+ * swapped, so after the first generations the evolution allocates nothing
+ * and populations of 100k+ do not grow the heap.
+ *
+ * The processes of crossover, mutation and reproduction are the same as in
+ * GeneticAlgorithm, applied in place on index ranges of the arrays.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class FlatPopulation {
+	private static final int GENE_SIZE = Chromosome.GENE_SIZE; // # of genes of a chromosome
+
+	private final int size; // population size
+	private final OutcomeTable table;
+	private final SplittableRandom master;
+	private final DoubleSupplier random;
+
+	private int[] genes; // the genes of this generation
+	private double[] fitness; // the adaptabilities of this generation
+	private int[] nextGenes; // the genes of the next generation
+	private double[] nextFitness; // the adaptabilities of the next generation
+
+	private Selection selection = new RouletteSelection(GeneticAlgorithm.CROSSOVEE_MIN_CHANGE);
+	private final GenomeSet genomes; // the genes of the next generation in reproduction()
+	private final int[] order; // the indices sorted by TopK
+
+	private int generation; // # of generations
+	private double total; // the total score for this generation
+	private int best; // index of the best chromosome of this generation
+	private final int[] bestEver = new int[GENE_SIZE]; // the best genes in all generations
+	private double bestEverScore = -1;
+	private ProgressReporter reporter; // reports simulate() in the background, null to print in place
+
+	/**
+	 * set up a random initial population
+	 * @param size - population size
+	 * @param seed - the seed of all random numbers
+	 */
+	public FlatPopulation(int size, long seed) {
+		if (size <= 0) {
+			throw new IllegalArgumentException("invalid initial size");
+		}
+
+		this.size = size;
+		this.table = Chromosome.TABLE;
+		this.master = new SplittableRandom(seed);
+		this.random = master::nextDouble;
+
+		genes = new int[size * GENE_SIZE];
+		fitness = new double[size];
+		nextGenes = new int[size * GENE_SIZE];
+		nextFitness = new double[size];
+		genomes = new GenomeSet(size);
+		order = new int[size];
+
+		for (int i = 0; i < size; i++) {
+			Chromosome.randomGenes(genes, i * GENE_SIZE, random);
+		}
+		table.scoreAll(genes, 0, size, fitness, 0);
+		findBestAndTotal();
+	}
+
+	/**
+	 * Make the population evolve for one generation by crossover of parents,
+	 * mutation, and then reproduction
+	 */
+	public void evolve() {
+		int children = (int)(size*GeneticAlgorithm.CROSSOVER_POP_RATE);
+		long start = System.nanoTime();
+
+		// Crossover and mutation into the next generation
+		for (int i = 0; i < children; i++) {
+			int child = i * GENE_SIZE;
+			System.arraycopy(genes, selection.select(random) * GENE_SIZE, nextGenes, child, GENE_SIZE);
+			Chromosome.crossover(nextGenes, child, random);
+		}
+		long crossed = System.nanoTime();
+		for (int i = 0; i < children; i++) {
+			if (random.getAsDouble() < GeneticAlgorithm.MUTATION_RATE) {
+				int mutationSize = (int)(random.getAsDouble()*(GeneticAlgorithm.MUTATION_NUM+1));
+				Chromosome.mutation(nextGenes, i * GENE_SIZE, mutationSize, random);
+			}
+		}
+		table.scoreAll(nextGenes, 0, children, nextFitness, 0); // the children in one pass
+		long mutated = System.nanoTime();
+
+		// Reproduction
+		int rescored = reproduction(children);
+		long reproduced = System.nanoTime();
+
+		// swap the generations and reset the relevant info
+		int[] tempGenes = genes;
+		genes = nextGenes;
+		nextGenes = tempGenes;
+		double[] tempFitness = fitness;
+		fitness = nextFitness;
+		nextFitness = tempFitness;
+
+		generation++;
+		findBestAndTotal();
+
+		Metrics metrics = Metrics.get();
+		metrics.evaluated(children + rescored);
+		metrics.generation(generation, size, crossed - start, mutated - crossed, reproduced - mutated,
+				System.nanoTime() - reproduced, fitness[best], total / size, 0);
+	}
+
+	/**
+	 * reproduce the top chromosomes of this generation into the rest of the
+	 * next generation, with mutation if their genes are there already
+	 * @param children - # of chromosomes already in the next generation
+	 * @return # of chromosomes mutated and scored again
+	 */
+	private int reproduction(int children) {
+		for (int i = 0; i < size; i++) {
+			order[i] = i;
+		}
+		TopK.select(fitness, order, size, size - children);
+
+		genomes.clear();
+		for (int i = 0; i < children; i++) {
+			genomes.add(nextGenes, i * GENE_SIZE);
+		}
+
+		int rescored = 0;
+		for (int i = children; i < size; i++) {
+			int elite = order[i - children];
+			int slot = i * GENE_SIZE;
+			System.arraycopy(genes, elite * GENE_SIZE, nextGenes, slot, GENE_SIZE);
+
+			if (genomes.add(nextGenes, slot)) {
+				nextFitness[i] = fitness[elite];
+			} else {
+				Chromosome.mutation(nextGenes, slot, GeneticAlgorithm.MUTATION_MIN_NUM, random);
+				genomes.add(nextGenes, slot);
+				nextFitness[i] = table.score(nextGenes, slot);
+				rescored++;
+			}
+		}
+		return rescored;
+	}
+
+	/**
+	 * find the total score and the best chromosome of this generation, keep
+	 * it if it is the best ever and prepare the selection of parents
+	 */
+	private void findBestAndTotal() {
+		total = 0;
+		best = 0;
+		for (int i = 0; i < size; i++) {
+			total += fitness[i];
+			if (fitness[best] < fitness[i]) {
+				best = i;
+			}
+		}
+
+		if (fitness[best] > bestEverScore) {
+			bestEverScore = fitness[best];
+			System.arraycopy(genes, best * GENE_SIZE, bestEver, 0, GENE_SIZE);
+		}
+
+		selection.prepare(fitness, size);
+	}
+
+	/**
+	 * set the strategy to select parents, starting from this generation
+	 * @param selection
+	 */
+	public void setSelection(Selection selection) {
+		this.selection = selection;
+		selection.prepare(fitness, size);
+	}
+
+	/**
+	 * the method to start the simulation of natural evolution
+	 * @param gen - number of generations for the population to simulate
+	 */
+	public void simulate(int gen) {
+		while (generation < gen) {
+			evolve();
+			if (reporter == null) {
+				printInfo();
+			} else if (reporter.isDue(generation)) {
+				reporter.report(snapshot());
+			}
+		}
+	}
+
+	/**
+	 * report the generations of simulate() through a reporter instead of
+	 * printing every one of them
+	 * @param reporter - null to print every generation in place
+	 */
+	public void setReporter(ProgressReporter reporter) {
+		this.reporter = reporter;
+	}
+
+	/**
+	 * @return the information printInfo() prints of this generation
+	 */
+	public GenerationSnapshot snapshot() {
+		int from = best * GENE_SIZE;
+		return new GenerationSnapshot(generation, Arrays.copyOfRange(genes, from, from + GENE_SIZE), fitness[best],
+				total / size, bestEver, bestEverScore);
+	}
+
+	/**
+	 * print information of this generation
+	 */
+	public void printInfo() {
+		int from = best * GENE_SIZE;
+		System.out.println("~~~~~~~~~~~~~~~~~~~~");
+		System.out.println("\tGeneration: " + generation);
+		System.out.println("\tBest generation: " + Arrays.toString(Arrays.copyOfRange(genes, from, from + GENE_SIZE)));
+		System.out.println("\tBest score: " + fitness[best]);
+		System.out.println("\tAverage score: " + (total/size));
+		System.out.println("\tBest generation so far: " + Arrays.toString(bestEver));
+		System.out.println("\tBest score so far: " + bestEverScore);
+		System.out.println("~~~~~~~~~~~~~~~~~~~~");
+	}
+
+	public int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * @return a copy of the best genes in all generations
+	 */
+	public int[] getBestEver() {
+		return bestEver.clone();
+	}
+
+	public double getBestEverScore() {
+		return bestEverScore;
+	}
+
+	public static void main(String[] args) {
+		FlatPopulation population = new FlatPopulation(100_000, 42);
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 100; i++) {
+			population.evolve();
+		}
+		population.printInfo();
+		System.out.println("time: " + (System.currentTimeMillis() - start) + "ms");
+	}
+}
@@ -1,10 +1,26 @@
 package bg.geneticalgorithm;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+import bg.checkpoint.Checkpoint;
+import bg.metrics.GenerationSnapshot;
+import bg.metrics.Metrics;
+import bg.metrics.ProgressReporter;
 
 /**
  * The class applies genetic algorithm to find the best arrangement of 100
@@ -16,21 +32,55 @@ import java.util.List;
  * 
  * @author Qiyu chen
  */
-public class GeneticAlgorithm {
-	private final double CROSSOVER_POP_RATE = 0.95; // percent of chromosomes for crossover
-	private final double CROSSOVEE_MIN_CHANGE = 1; // percent of average to allow be a parent
-	private final double MUTATION_RATE = 0.3; // percent of mutation
-	private final int MUTATION_NUM =40; // # of max genes mutating for mutation
-	private final int MUTATION_MIN_NUM =5; // # of min genes mutating for special case mutation
+public class GeneticAlgorithm implements AutoCloseable {
+	static final double CROSSOVER_POP_RATE = 0.95; // percent of chromosomes for crossover
+	static final double CROSSOVEE_MIN_CHANGE = 1; // percent of average to allow be a parent
+	static final double MUTATION_RATE = 0.3; // percent of mutation
+	static final int MUTATION_NUM =40; // # of max genes mutating for mutation
+	static final int MUTATION_MIN_NUM =5; // # of min genes mutating for special case mutation
+	static final long CHECKPOINT_MINUTES = 5; // the time between two checkpoints of multiSimulate()
+	static final int POOL_SLICES = 16; // # of slices of the children on a pool shared with others
+	
+	// order chromosomes from the highest adaptability to the lowest
+	private static final Comparator<Chromosome> BY_ADAPTABILITY = new Comparator<Chromosome>(){
+
+		public int compare(Chromosome o1, Chromosome o2) {
+			if (o1.getAdaptability() > o2.getAdaptability()) {
+				return -1;
+			} else if (o1.getAdaptability() < o2.getAdaptability()) {
+				return 1;
+			} else {
+				return 0;
+			}
+		}
+		
+	};
 	
 	private int generation; // # of generations
 	private int size; 	// population size
 	private List<Chromosome> population; // the population
 	
-	private double total; // the total score for this generation used for getParent() 
+	private double total; // the total score for this generation 
 	private Chromosome best; // the best chromosome for this generation 
 	private Chromosome bestEver; // the best chromosome in all generations
 	
+	private DoubleSupplier random = Math::random; // the random source of the main thread
+	private SplittableRandom master; // splits the streams of the workers, null if not seeded
+	private long seed; // the seed master was last created from
+	private ForkJoinPool pool; // the workers, null if evolving on a single thread
+	private boolean ownsPool; // whether close() shuts the workers down
+	private int slices = 1; // # of slices of the children, each with its own random stream
+	
+	private Selection selection = new RouletteSelection(CROSSOVEE_MIN_CHANGE); // how parents are selected
+	private GenomeSet genomes; // the genes of the new population in reproduction()
+	private double[] fitness; // the adaptabilities for top() and the selection
+	private int[] order; // the indices sorted by top()
+	
+	private int simulation; // # of simulations done by multiSimulate()
+	private Chromosome bestOfAll; // the best chromosome of all simulations of multiSimulate()
+	private ProgressReporter reporter; // reports simulate() in the background, null to print in place
+	private boolean coevolution; // score against this generation instead of the data arrangements
+	
 	/**
 	 * The constructor to set up the fields and the initial population
 	 * @param size
@@ -41,8 +91,77 @@ public class GeneticAlgorithm {
 			return;
 		}
 		
+		init(size);
+	}
+	
+	/**
+	 * The constructor to set up a population that evolves its children on 
+	 * several threads. Each worker draws from its own SplittableRandom split 
+	 * from the seed, so a run can be reproduced with the same seed and the
+	 * same number of threads.
+	 * @param size
+	 * @param threads - # of worker threads
+	 * @param seed - the seed of all random numbers
+	 */
+	public GeneticAlgorithm(int size, int threads, long seed) {
+		if (size <=0 || threads <= 0) {
+			System.err.println("invalid initial size or threads");
+			return;
+		}
+		
+		this.master = new SplittableRandom(seed);
+		this.random = master::nextDouble;
+		this.slices = threads;
+		if (threads > 1) {
+			this.pool = new ForkJoinPool(threads);
+			this.ownsPool = true;
+		}
+		
+		init(size);
+	}
+	
+	/**
+	 * The constructor to set up a population that evolves its children on 
+	 * the workers of a pool shared with others. The children are split into
+	 * POOL_SLICES slices, each with its own random stream, whatever the 
+	 * parallelism of the pool, so a run gives the same result with the same
+	 * seed on any machine. The pool is not shut down by close().
+	 * @param size
+	 * @param pool - the workers
+	 * @param seed - the seed of all random numbers
+	 */
+	public GeneticAlgorithm(int size, ForkJoinPool pool, long seed) {
+		if (size <=0) {
+			System.err.println("invalid initial size");
+			return;
+		}
+		
+		this.master = new SplittableRandom(seed);
+		this.random = master::nextDouble;
+		this.slices = POOL_SLICES;
+		this.pool = pool;
+		
+		init(size);
+	}
+	
+	/**
+	 * shut down the workers if they were created by the constructor
+	 */
+	@Override
+	public void close() {
+		if (ownsPool) {
+			pool.shutdown();
+		}
+	}
+	
+	/**
+	 * set up the fields and the initial population
+	 * @param size
+	 */
+	private void init(int size) {
 		generation = 0;
 		this.size = size;
+		this.genomes = new GenomeSet(size);
 		randomInitialization();
 		best = Chromosome.clone(population.get(0));
 		bestEver = Chromosome.clone(population.get(0));
@@ -56,9 +175,47 @@ public class GeneticAlgorithm {
 		population = new ArrayList<Chromosome>();
 		
 		for (int i = 0; i<size; i++) {
-			population.add(new Chromosome());
+			population.add(randomChromosome());
+		}
+		if (coevolution) {
+			Tournament.score(population, workers());
 		}
 	}
+	
+	/**
+	 * @return a random chromosome, scored against the data arrangements, or
+	 * left unscored for the round robin of co-evolution
+	 */
+	private Chromosome randomChromosome() {
+		return coevolution ? Chromosome.unscored(random) : new Chromosome(random);
+	}
+	
+	/**
+	 * score every chromosome by a round robin against the others of its 
+	 * generation instead of against the data arrangements, or go back to
+	 * the data arrangements. The population is scored again and the best
+	 * ever restarts from it, since the scores of the two are not comparable.
+	 * @param coevolution
+	 */
+	public void setCoevolution(boolean coevolution) {
+		this.coevolution = coevolution;
+		if (coevolution) {
+			Tournament.score(population, workers());
+		} else {
+			for (Chromosome chr: population) {
+				chr.quickCalcAdap();
+			}
+		}
+		bestEver = Chromosome.clone(population.get(0));
+		findBestAndTotal();
+	}
+	
+	/**
+	 * @return the workers, or the common pool if evolving on a single thread
+	 */
+	private ForkJoinPool workers() {
+		return pool != null ? pool : ForkJoinPool.commonPool();
+	}
 
 	/**
 	 * find the total score and the chromosome with the highest adaptability of 
@@ -84,8 +241,17 @@ public class GeneticAlgorithm {
 //					" best ever: " + bestEver.getAdaptability());
 			this.bestEver = Chromosome.clone(best);
 		}
+		
+		prepareSelection();
 	}
 
+	/**
+	 * @return the best chromosome in all generations
+	 */
+	public Chromosome getBestEver() {
+		return bestEver;
+	}
+	
 	/**
 	 * print information of this generation 
 	 */
@@ -105,47 +271,128 @@ public class GeneticAlgorithm {
 	
 	/**
 	 * Make the population evolve for one generation by crossover of parents, 
-	 * mutation, and then reproduction 
+	 * mutation, and then reproduction, and record the time of each in the
+	 * metrics
 	 */
 	public void evolve() {
 		Chromosome parent, child; 
-		List<Chromosome> newPopulation = new ArrayList<Chromosome>();
+		List<Chromosome> newPopulation;
+		long start = System.nanoTime(), crossed, mutated;
 		
-		// Crossover
-		for (int i = 0; i < (int)(size*CROSSOVER_POP_RATE); i++) {
-			parent = getParent();
-			child = parent.crossover();
-			newPopulation.add(child);
+		if (pool != null) {
+			// Crossover and mutation on the workers, timed as crossover
+			newPopulation = parallelOffspring();
+			crossed = mutated = System.nanoTime();
+		} else {
+			newPopulation = new ArrayList<Chromosome>();
+			
+			// Crossover
+			for (int i = 0; i < (int)(size*CROSSOVER_POP_RATE); i++) {
+				parent = getParent(random);
+				child = parent.unscoredCrossover(random);
+				newPopulation.add(child);
+			}
+			crossed = System.nanoTime();
+			
+			// Mutation, and the children scored in one pass
+			mutation(newPopulation);
+			if (!coevolution) {
+				Chromosome.scoreAll(newPopulation, 0, newPopulation.size());
+			}
+			mutated = System.nanoTime();
 		}
 		
-		// Mutation
-		mutation(newPopulation);
-		
-		// Reproduction 
+		// Reproduction, and the round robin of the new population
 		reproduction(newPopulation);
+		if (coevolution) {
+			Tournament.score(newPopulation, workers());
+		}
+		long reproduced = System.nanoTime();
 		
 		// reset the population and relevant info
 		population = newPopulation;
 		findBestAndTotal();
+		generation++;
+		
+		Metrics.get().generation(generation, size, crossed - start, mutated - crossed, 
+				reproduced - mutated, System.nanoTime() - reproduced, 
+				best.getAdaptability(), total/size, Chromosome.getCacheHitRate());
 	}
 	
 	/**
-	 * select a parent from this generation through the Roulette Wheel Selection
-	 * and eliminate the bad ones
-	 * @return the selected parent
+	 * create the children of the next generation by crossover and mutation
+	 * on the workers in slices, each with its own random stream and scored
+	 * in one pass
+	 * @return the children
 	 */
-	private Chromosome getParent() {
-		double target = Math.random() * total; // The target cumulative adaptability
-		double sum = 0; // the cumulative adaptability
+	private List<Chromosome> parallelOffspring() {
+		int count = (int)(size*CROSSOVER_POP_RATE);
+		Chromosome[] children = new Chromosome[count];
+		List<Chromosome> childList = Arrays.asList(children);
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(slices);
 		
-		for (Chromosome chr: population) {
-			sum += chr.getAdaptability();
-			if (sum >= target && sum>= (total/size)*CROSSOVEE_MIN_CHANGE) {
-				return chr;
+		for (int t = 0; t < slices; t++) {
+			int from = t * count / slices, to = (t+1) * count / slices;
+			SplittableRandom stream = master.split(); // split in order to be reproducible
+			DoubleSupplier workerRandom = stream::nextDouble;
+			tasks.add(() -> {
+				for (int i = from; i < to; i++) {
+					Chromosome child = getParent(workerRandom).unscoredCrossover(workerRandom);
+					if (workerRandom.getAsDouble() < MUTATION_RATE) {
+						child.mutation((int)(workerRandom.getAsDouble()*(MUTATION_NUM+1)), workerRandom);
+					}
+					children[i] = child;
+				}
+				if (!coevolution) {
+					Chromosome.scoreAll(childList, from, to);
+				}
+				return null;
+			});
+		}
+		for (Future<Void> future : pool.invokeAll(tasks)) {
+			try {
+				future.get();
+			} catch (InterruptedException | ExecutionException e) {
+				throw new IllegalStateException("failed to evolve the children", e);
 			}
 		}
 		
-		return null;
+		return new ArrayList<Chromosome>(childList);
+	}
+	
+	/**
+	 * select a parent from this generation through the selection strategy,
+	 * the Roulette Wheel Selection by default
+	 * @param random - the source of random numbers in [0, 1)
+	 * @return the selected parent
+	 */
+	private Chromosome getParent(DoubleSupplier random) {
+		return population.get(selection.select(random));
+	}
+	
+	/**
+	 * set the strategy to select parents, starting from this generation
+	 * @param selection
+	 */
+	public void setSelection(Selection selection) {
+		this.selection = selection;
+		prepareSelection();
+	}
+	
+	/**
+	 * prepare the selection of parents from this generation
+	 */
+	private void prepareSelection() {
+		int n = population.size();
+		if (fitness == null || fitness.length < n) {
+			order = new int[n];
+			fitness = new double[n];
+		}
+		
+		for (int i = 0; i < n; i++) {
+			fitness[i] = population.get(i).getAdaptability();
+		}
+		selection.prepare(fitness, n);
 	}
 	
 	/**
@@ -154,9 +401,9 @@ public class GeneticAlgorithm {
 	 */
 	private void mutation(List<Chromosome> pop) {
 		for (Chromosome chr: pop) {
-			if (Math.random() < MUTATION_RATE) {
-				int mutationSize = (int)(Math.random()*(MUTATION_NUM+1));
-				chr.mutation(mutationSize);
+			if (random.getAsDouble() < MUTATION_RATE) {
+				int mutationSize = (int)(random.getAsDouble()*(MUTATION_NUM+1));
+				chr.mutation(mutationSize, random);
 			}
 		}
 	}
@@ -172,35 +419,90 @@ public class GeneticAlgorithm {
 			return;
 		}
 		
-		// sort population
-		Collections.sort(population, new Comparator<Chromosome>(){
-
-			public int compare(Chromosome o1, Chromosome o2) {
-				if (o1.getAdaptability() > o2.getAdaptability()) {
-					return -1;
-				} else if (o1.getAdaptability() < o2.getAdaptability()) {
-					return 1;
-				} else {
-					return 0;
-				}
-			}
-			
-		});
+		// select the top chromosomes
+		int initSize = newPop.size();
+		int[] top = top(size - initSize);
+		
+		// the genes already in the new population
+		genomes.clear();
+		for (Chromosome chr: newPop) {
+			genomes.add(chr.getGenes());
+		}
 		
 		// reproduce the top chromosomes
-		int initSize = newPop.size();
 		for(int i = 1; i + initSize <= size; i++) {
-			if (! newPop.contains(population.get(i-1))) {
-				newPop.add(Chromosome.clone(population.get(i-1)));
+			Chromosome chr = population.get(top[i-1]);
+			if (genomes.add(chr.getGenes())) {
+				newPop.add(Chromosome.clone(chr));
 			} else {
-				Chromosome mutatedBest = Chromosome.clone(population.get(i-1));
-				mutatedBest.mutation(MUTATION_MIN_NUM);
+				Chromosome mutatedBest = Chromosome.clone(chr);
+				if (coevolution) {
+					mutatedBest.setAdaptability(Double.NaN); // scored by the round robin
+				}
+				mutatedBest.mutation(MUTATION_MIN_NUM, random);
+				genomes.add(mutatedBest.getGenes());
 				newPop.add(mutatedBest);
 				
 			}
-//			System.out.println("i: " + i + " score: " + population.get(i-1).getAdaptability()
-//					+ " :" + Arrays.toString(population.get(i-1).getGenes()));
+//			System.out.println("i: " + i + " score: " + chr.getAdaptability()
+//					+ " :" + Arrays.toString(chr.getGenes()));
+		}
+	}
+	
+	/**
+	 * find the chromosomes with the highest adaptability by partial selection
+	 * @param k - # of chromosomes
+	 * @return an array starting with the indices of the top k chromosomes in
+	 * the population, from the best down
+	 */
+	private int[] top(int k) {
+		int n = population.size();
+		if (order == null || order.length < n) {
+			order = new int[n];
+			fitness = new double[n];
+		}
+		
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+			fitness[i] = population.get(i).getAdaptability();
+		}
+		TopK.select(fitness, order, n, k);
+		
+		return order;
+	}
+	
+	/**
+	 * copy the top chromosomes of this generation to migrate to another 
+	 * population
+	 * @param num - # of chromosomes
+	 * @return copies of the num best chromosomes
+	 */
+	List<Chromosome> emigrants(int num) {
+		int[] top = top(num);
+		
+		List<Chromosome> emigrants = new ArrayList<Chromosome>(num);
+		for (int i = 0; i < num && i < population.size(); i++) {
+			emigrants.add(Chromosome.clone(population.get(top[i])));
+		}
+		return emigrants;
+	}
+	
+	/**
+	 * replace the worst chromosomes of this generation by the migrants from
+	 * another population
+	 * @param migrants - chromosomes no other population uses anymore
+	 */
+	void immigrate(List<Chromosome> migrants) {
+		if (migrants.isEmpty()) {
+			return;
+		}
+		
+		Collections.sort(population, BY_ADAPTABILITY);
+		int start = Math.max(0, size - migrants.size());
+		for (int i = start; i < size; i++) {
+			population.set(i, migrants.get(i - start));
 		}
+		findBestAndTotal();
 	}
 	
 	/**
@@ -210,11 +512,31 @@ public class GeneticAlgorithm {
 	public void simulate(int gen) {
 		while (generation < gen) {
 			evolve();
-			generation++;
-			printInfo();
+			if (reporter == null) {
+				printInfo();
+			} else if (reporter.isDue(generation)) {
+				reporter.report(snapshot());
+			}
 		}
 	}
 	
+	/**
+	 * report the generations of simulate() through a reporter instead of 
+	 * printing every one of them
+	 * @param reporter - null to print every generation in place
+	 */
+	public void setReporter(ProgressReporter reporter) {
+		this.reporter = reporter;
+	}
+	
+	/**
+	 * @return the information printInfo() prints of this generation
+	 */
+	public GenerationSnapshot snapshot() {
+		return new GenerationSnapshot(generation, best.getGenes(), best.getAdaptability(), total/size,
+				bestEver.getGenes(), bestEver.getAdaptability());
+	}
+	
 	/**
 	 * the method to repeat the simulation of natural evolution for a given number
 	 * of times, and only show the highest score and its combination
@@ -222,34 +544,72 @@ public class GeneticAlgorithm {
 	 * @param repeat - the number of times to simulate 
 	 */
 	public void multiSimulate(int gen, int repeat) {
-		Chromosome bestOfAll = new Chromosome(); // store the best chromosome 
+		multiSimulate(gen, repeat, null);
+	}
+	
+	/**
+	 * repeat the simulation as multiSimulate(gen, repeat), and write a 
+	 * checkpoint every CHECKPOINT_MINUTES in the background, so that the run
+	 * resumes from the checkpoint if it is started again. A seeded run is
+	 * reseeded from itself after every generation and every new population,
+	 * whether a checkpoint is written or not, so it resumes with the same
+	 * random numbers it would have drawn.
+	 * @param gen - number of generations for the population in each simulation
+	 * @param repeat - the number of times to simulate 
+	 * @param checkpointPath - the checkpoint file, null for none
+	 */
+	public void multiSimulate(int gen, int repeat, Path checkpointPath) {
+		Checkpoint checkpoint = checkpointPath == null ? null 
+				: new Checkpoint(checkpointPath, "multiSimulate", CHECKPOINT_MINUTES, TimeUnit.MINUTES);
 		
-		for (int i = 0; i<repeat; i++) {
-			while (generation < gen) {
-				evolve();
-				generation++;
+		try {
+			simulation = 0;
+			bestOfAll = randomChromosome(); // store the best chromosome 
+			if (checkpoint != null) {
+				resume(checkpoint);
 			}
 			
-			if (bestOfAll.getAdaptability() <= this.bestEver.getAdaptability()) {
-				bestOfAll = Chromosome.clone(bestEver);
+			for (; simulation < repeat; simulation++) {
+				while (generation < gen) {
+					evolve();
+					nextSeed();
+					
+					if (checkpoint != null && checkpoint.isDue()) {
+						saveCheckpoint(checkpoint);
+					}
+				}
+				
+				if (Double.isNaN(bestOfAll.getAdaptability()) // unscored in co-evolution
+						|| bestOfAll.getAdaptability() <= this.bestEver.getAdaptability()) {
+					bestOfAll = Chromosome.clone(bestEver);
+					
+					System.out.println("new best: " + bestOfAll.getAdaptability() 
+							+ " : " + Arrays.toString(bestOfAll.getGenes()));
+				}
 				
-				System.out.println("new best: " + bestOfAll.getAdaptability() 
-						+ " : " + Arrays.toString(bestOfAll.getGenes()));
+				if (simulation % 25 == 0) {
+					System.out.println("---------------------------------------------------------------------------------------------");
+					System.out.println("simulation: " + simulation
+							+ " best so far: " + bestOfAll.getAdaptability() 
+							+ " : " + Arrays.toString(bestOfAll.getGenes()));
+					System.out.println("---------------------------------------------------------------------------------------------");
+				}
+				
+				generation = 0;
+				randomInitialization();
+				best = Chromosome.clone(population.get(0));
+				bestEver = Chromosome.clone(population.get(0));
+				findBestAndTotal();
+				nextSeed();
 			}
 			
-			if (i % 25 == 0) {
-				System.out.println("---------------------------------------------------------------------------------------------");
-				System.out.println("simulation: " + i
-						+ " best so far: " + bestOfAll.getAdaptability() 
-						+ " : " + Arrays.toString(bestOfAll.getGenes()));
-				System.out.println("---------------------------------------------------------------------------------------------");
+			if (checkpoint != null) {
+				saveCheckpoint(checkpoint); // the finished run
+			}
+		} finally {
+			if (checkpoint != null) {
+				checkpoint.close();
 			}
-			
-			generation = 0;
-			randomInitialization();
-			best = Chromosome.clone(population.get(0));
-			bestEver = Chromosome.clone(population.get(0));
-			findBestAndTotal();
 		}
 		
 		System.out.println("---------------------------------------------------------------------------------------------");
@@ -259,4 +619,112 @@ public class GeneticAlgorithm {
 		System.out.println("---------------------------------------------------------------------------------------------");
 	}
 	
+	/**
+	 * save the state of multiSimulate() right after nextSeed(), so that the
+	 * seed saved is the whole state of the random source of a seeded run
+	 */
+	private void saveCheckpoint(Checkpoint checkpoint) {
+		long savedSeed = seed;
+		checkpoint.save(out -> {
+			out.writeInt(simulation);
+			out.writeInt(generation);
+			out.writeInt(population.size());
+			out.writeBoolean(master != null);
+			out.writeLong(savedSeed);
+			out.writeBoolean(coevolution);
+			writeGenes(out, bestOfAll);
+			out.writeDouble(bestOfAll.getAdaptability());
+			writeGenes(out, bestEver);
+			out.writeDouble(bestEver.getAdaptability());
+			for (Chromosome chr : population) {
+				writeGenes(out, chr);
+			}
+		});
+	}
+	
+	/**
+	 * restore the state of multiSimulate() from the checkpoint if there is
+	 * one, co-evolving if the saved run did
+	 */
+	private void resume(Checkpoint checkpoint) {
+		try (DataInputStream in = checkpoint.load()) {
+			if (in == null) {
+				return;
+			}
+			
+			int savedSimulation = in.readInt();
+			int savedGeneration = in.readInt();
+			int n = in.readInt();
+			if (n != size) {
+				throw new IOException("a checkpoint of a population of " + n + " instead of " + size);
+			}
+			boolean seeded = in.readBoolean();
+			long seed = in.readLong();
+			if (seeded && master != null) {
+				reseed(seed);
+			}
+			coevolution = in.readBoolean();
+			
+			// the best keep their scores, which a round robin cannot give again
+			bestOfAll = readGenes(in);
+			bestOfAll.setAdaptability(in.readDouble());
+			bestEver = readGenes(in);
+			bestEver.setAdaptability(in.readDouble());
+			population = new ArrayList<Chromosome>(n);
+			for (int i = 0; i < n; i++) {
+				population.add(readGenes(in));
+			}
+			if (coevolution) {
+				Tournament.score(population, workers());
+			} else {
+				Chromosome.scoreAll(population, 0, n);
+			}
+			simulation = savedSimulation;
+			generation = savedGeneration;
+			findBestAndTotal();
+			
+			System.out.println("resumed from " + checkpoint.getPath() + " at simulation " + simulation
+					+ ", generation " + generation);
+		} catch (IOException e) {
+			throw new IllegalStateException("cannot resume from " + checkpoint.getPath(), e);
+		}
+	}
+	
+	/**
+	 * reseed a seeded run from itself, since SplittableRandom does not 
+	 * expose its state
+	 */
+	private void nextSeed() {
+		if (master != null) {
+			reseed(master.nextLong());
+		}
+	}
+	
+	/**
+	 * draw the random numbers of the main thread and of the workers from a
+	 * new seed
+	 */
+	private void reseed(long seed) {
+		this.seed = seed;
+		master = new SplittableRandom(seed);
+		random = master::nextDouble;
+	}
+	
+	private static void writeGenes(DataOutputStream out, Chromosome chr) throws IOException {
+		for (int gene : chr.getGenes()) {
+			out.writeInt(gene);
+		}
+	}
+	
+	/**
+	 * @return an unscored chromosome of the genes read
+	 */
+	private static Chromosome readGenes(DataInputStream in) throws IOException {
+		int[] genes = new int[Chromosome.GENE_SIZE];
+		for (int i = 0; i < genes.length; i++) {
+			genes[i] = in.readInt();
+		}
+		return Chromosome.unscored(genes);
+	}
+	
 }
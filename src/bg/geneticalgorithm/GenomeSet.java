@@ -0,0 +1,118 @@
+package bg.geneticalgorithm;
+
+import java.util.Arrays;
+
+/**
+ * A set of arrangements compared by their genes, not by identity. The genes
+ * are packed by PackedGenes and kept in an open-addressed table of
+ * primitive arrays with linear probing, which is cleared and reused every
+ * generation.
+ *
+ * @author Qiyu Chen
+ *
+ */
+class GenomeSet {
+	private static final int EMPTY = -1; // tail of an empty slot
+
+	private long[] heads;
+	private int[] tails;
+	private int count; // # of genomes in the set
+
+	/**
+	 * @param expected - # of genomes the set is expected to hold
+	 */
+	GenomeSet(int expected) {
+		int slots = Integer.highestOneBit(Math.max(4, expected) * 2 - 1) << 1;
+		heads = new long[slots];
+		tails = new int[slots];
+		Arrays.fill(tails, EMPTY);
+	}
+
+	/**
+	 * add the genes at genes[offset..offset+10) to the set
+	 * @return true if they were not in the set yet. Genes that cannot be 
+	 * packed are never seen as duplicates.
+	 */
+	boolean add(int[] genes, int offset) {
+		if (!PackedGenes.packable(genes, offset)) {
+			return true;
+		}
+		if (2 * (count + 1) > tails.length) {
+			grow();
+		}
+
+		return insert(PackedGenes.head(genes, offset), PackedGenes.tail(genes, offset));
+	}
+
+	boolean add(int[] genes) {
+		return add(genes, 0);
+	}
+
+	/**
+	 * @return true if the genes at genes[offset..offset+10) are in the set
+	 */
+	boolean contains(int[] genes, int offset) {
+		if (!PackedGenes.packable(genes, offset)) {
+			return false;
+		}
+
+		long head = PackedGenes.head(genes, offset);
+		int tail = PackedGenes.tail(genes, offset);
+		int mask = tails.length - 1;
+		for (int slot = PackedGenes.hash(head, tail) & mask; tails[slot] != EMPTY; slot = (slot + 1) & mask) {
+			if (tails[slot] == tail && heads[slot] == head) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * remove every genome
+	 */
+	void clear() {
+		if (count > 0) {
+			Arrays.fill(tails, EMPTY);
+			count = 0;
+		}
+	}
+
+	int size() {
+		return count;
+	}
+
+	private boolean insert(long head, int tail) {
+		int mask = tails.length - 1;
+		int slot = PackedGenes.hash(head, tail) & mask;
+
+		while (tails[slot] != EMPTY) {
+			if (tails[slot] == tail && heads[slot] == head) {
+				return false;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		heads[slot] = head;
+		tails[slot] = tail;
+		count++;
+		return true;
+	}
+
+	/**
+	 * double the table and reinsert every genome
+	 */
+	private void grow() {
+		long[] oldHeads = heads;
+		int[] oldTails = tails;
+
+		heads = new long[oldTails.length * 2];
+		tails = new int[oldTails.length * 2];
+		Arrays.fill(tails, EMPTY);
+		count = 0;
+		for (int slot = 0; slot < oldTails.length; slot++) {
+			if (oldTails[slot] != EMPTY) {
+				insert(oldHeads[slot], oldTails[slot]);
+			}
+		}
+	}
+}
@@ -0,0 +1,129 @@
+package bg.geneticalgorithm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The island model of the genetic algorithm: several populations evolve at
+ * the same time on separate threads instead of one after another as in
+ * GeneticAlgorithm.multiSimulate(). Every few generations each island sends
+ * copies of its top chromosomes to the next island in a ring through a
+ * lock-free queue, where they replace the worst chromosomes. The islands
+ * never wait for each other.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class IslandModel {
+	private final int islands; // # of populations
+	private final int size; // population size of each island
+	private final int interval; // # of generations between migrations
+	private final int migrants; // # of chromosomes sent at each migration
+	private final long seed;
+
+	/**
+	 * @param islands - # of populations evolving at the same time
+	 * @param size - population size of each island
+	 * @param interval - # of generations between migrations
+	 * @param migrants - # of top chromosomes sent at each migration
+	 * @param seed - the seed of the first island, the others follow it
+	 */
+	public IslandModel(int islands, int size, int interval, int migrants, long seed) {
+		if (islands <= 0 || size <= 0 || interval <= 0 || migrants < 0 || migrants > size) {
+			throw new IllegalArgumentException("invalid island model parameters");
+		}
+
+		this.islands = islands;
+		this.size = size;
+		this.interval = interval;
+		this.migrants = migrants;
+		this.seed = seed;
+	}
+
+	/**
+	 * evolve every island for a given number of generations
+	 * @param gen - number of generations of each island
+	 * @return the best chromosome of all islands
+	 */
+	public Chromosome simulate(int gen) {
+		List<ConcurrentLinkedQueue<Chromosome>> inboxes = new ArrayList<ConcurrentLinkedQueue<Chromosome>>();
+		List<Callable<Chromosome>> tasks = new ArrayList<Callable<Chromosome>>();
+		for (int i = 0; i < islands; i++) {
+			inboxes.add(new ConcurrentLinkedQueue<Chromosome>());
+		}
+		for (int i = 0; i < islands; i++) {
+			int island = i;
+			tasks.add(() -> evolve(island, gen, inboxes.get(island), inboxes.get((island + 1) % islands)));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(islands);
+		Chromosome bestOfAll = null;
+		try {
+			for (Future<Chromosome> future : executor.invokeAll(tasks)) {
+				Chromosome best = future.get();
+				if (bestOfAll == null || best.getAdaptability() > bestOfAll.getAdaptability()) {
+					bestOfAll = best;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while evolving the islands", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("failed to evolve the islands", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+
+		System.out.println("---------------------------------------------------------------------------------------------");
+		System.out.println("Result for " + islands + " islands of " + gen + " generations:");
+		System.out.println("best score: " + bestOfAll.getAdaptability());
+		System.out.println("arrangement: " + Arrays.toString(bestOfAll.getGenes()));
+		System.out.println("---------------------------------------------------------------------------------------------");
+
+		return bestOfAll;
+	}
+
+	/**
+	 * evolve one island on the current thread
+	 * @param island - index of the island
+	 * @param gen - number of generations
+	 * @param inbox - the migrants sent to this island
+	 * @param outbox - the inbox of the next island
+	 * @return the best chromosome of the island
+	 */
+	private Chromosome evolve(int island, int gen, ConcurrentLinkedQueue<Chromosome> inbox,
+			ConcurrentLinkedQueue<Chromosome> outbox) {
+		try (GeneticAlgorithm ga = new GeneticAlgorithm(size, 1, seed + island)) {
+			List<Chromosome> arrived = new ArrayList<Chromosome>(migrants);
+
+			for (int g = 1; g <= gen; g++) {
+				ga.evolve();
+
+				if (g % interval == 0 && islands > 1) {
+					outbox.addAll(ga.emigrants(migrants));
+
+					Chromosome migrant;
+					arrived.clear();
+					while (arrived.size() < size && (migrant = inbox.poll()) != null) {
+						arrived.add(migrant);
+					}
+					ga.immigrate(arrived);
+				}
+			}
+
+			return ga.getBestEver();
+		}
+	}
+
+	public static void main(String[] args) {
+		int cores = Runtime.getRuntime().availableProcessors();
+		new IslandModel(cores, 1500, 25, 15, 42).simulate(400);
+	}
+}
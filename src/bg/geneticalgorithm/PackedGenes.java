@@ -0,0 +1,54 @@
+package bg.geneticalgorithm;
+
+/**
+ * Packing of the 10 genes of an arrangement into primitives: the first 9
+ * genes are packed 7 bits each into a long head and the last gene is kept
+ * as an int tail. Genes sum to 100, so they always fit in 7 bits.
+ *
+ * @author Qiyu Chen
+ *
+ */
+final class PackedGenes {
+	static final int GENE_BITS = 7; // genes are at most 100
+
+	private PackedGenes() {
+	}
+
+	/**
+	 * @return true if every gene at genes[offset..offset+10) fits in GENE_BITS bits
+	 */
+	static boolean packable(int[] genes, int offset) {
+		for (int i = offset; i < offset + Chromosome.GENE_SIZE; i++) {
+			if (genes[i] < 0 || genes[i] >= (1 << GENE_BITS)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * pack all genes but the last into a long
+	 */
+	static long head(int[] genes, int offset) {
+		long head = 0;
+		for (int i = offset; i < offset + Chromosome.GENE_SIZE - 1; i++) {
+			head = (head << GENE_BITS) | genes[i];
+		}
+		return head;
+	}
+
+	/**
+	 * @return the last gene
+	 */
+	static int tail(int[] genes, int offset) {
+		return genes[offset + Chromosome.GENE_SIZE - 1];
+	}
+
+	/**
+	 * @return a well mixed 32-bit hash of a packed key
+	 */
+	static int hash(long head, int tail) {
+		long h = (head ^ ((long)tail << 57)) * 0x9E3779B97F4A7C15L;
+		return (int)(h >>> 32);
+	}
+}
@@ -0,0 +1,71 @@
+package bg.geneticalgorithm;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * The linear Rank Selection: a chromosome is selected with a probability 
+ * that depends on its rank instead of its adaptability, so a few strong 
+ * chromosomes cannot take over the population. The best chromosome is 
+ * pressure times as likely as the average one, the worst 2 - pressure times.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class RankSelection implements Selection {
+	private final double pressure; // selective pressure in [1, 2]
+
+	private int[] order = new int[0]; // indices from the best down
+	private double[] fitness = new double[0];
+	private double[] cumulative = new double[0]; // cumulative weights by rank
+	private int n;
+
+	/**
+	 * @param pressure - the selective pressure in [1, 2]
+	 */
+	public RankSelection(double pressure) {
+		if (pressure < 1 || pressure > 2) {
+			throw new IllegalArgumentException("selective pressure must be in [1, 2]: " + pressure);
+		}
+		this.pressure = pressure;
+	}
+
+	@Override
+	public void prepare(double[] fitness, int n) {
+		if (order.length < n) {
+			order = new int[n];
+			this.fitness = new double[n];
+			cumulative = new double[n];
+		}
+		this.n = n;
+
+		System.arraycopy(fitness, 0, this.fitness, 0, n);
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		TopK.select(this.fitness, order, n, n);
+
+		// weight of the chromosome at rank r from the best down
+		double sum = 0;
+		for (int r = 0; r < n; r++) {
+			double scaled = n == 1 ? 1 : (double)(n - 1 - r) / (n - 1);
+			sum += (2 - pressure) + 2 * (pressure - 1) * scaled;
+			cumulative[r] = sum;
+		}
+	}
+
+	@Override
+	public int select(DoubleSupplier random) {
+		double target = random.getAsDouble() * cumulative[n - 1];
+
+		int lo = 0, hi = n - 1;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (cumulative[mid] > target) {
+				hi = mid;
+			} else {
+				lo = mid + 1;
+			}
+		}
+		return order[lo];
+	}
+}
@@ -0,0 +1,63 @@
+package bg.geneticalgorithm;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * The Roulette Wheel Selection: a chromosome is selected with a probability
+ * proportional to its adaptability. The cumulative adaptabilities are built
+ * once per generation and each parent is found by binary search.
+ * 
+ * A parent must also reach a cumulative adaptability of minChange times the
+ * average, which eliminates the first bad chromosomes as the linear walk of
+ * the wheel did.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class RouletteSelection implements Selection {
+	private final double minChange; // percent of average to allow be a parent
+
+	private double[] cumulative = new double[0]; // cumulative adaptabilities
+	private int n;
+
+	/**
+	 * @param minChange - percent of average cumulative adaptability a parent 
+	 * must reach
+	 */
+	public RouletteSelection(double minChange) {
+		this.minChange = minChange;
+	}
+
+	@Override
+	public void prepare(double[] fitness, int n) {
+		if (cumulative.length < n) {
+			cumulative = new double[n];
+		}
+		this.n = n;
+
+		double sum = 0;
+		for (int i = 0; i < n; i++) {
+			sum += fitness[i];
+			cumulative[i] = sum;
+		}
+	}
+
+	@Override
+	public int select(DoubleSupplier random) {
+		double total = cumulative[n - 1];
+		double target = random.getAsDouble() * total; // The target cumulative adaptability
+		target = Math.max(target, (total / n) * minChange);
+
+		// the first chromosome whose cumulative adaptability reaches the target
+		int lo = 0, hi = n - 1;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (cumulative[mid] >= target) {
+				hi = mid;
+			} else {
+				lo = mid + 1;
+			}
+		}
+		return lo;
+	}
+}
@@ -0,0 +1,29 @@
+package bg.geneticalgorithm;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * The strategy to select parents from a generation. The selection is
+ * prepared once per generation from the adaptabilities of the population,
+ * after which select() only reads it and may be called by several threads
+ * at the same time.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public interface Selection {
+
+	/**
+	 * prepare to select from a new generation
+	 * @param fitness - the adaptability of each chromosome, not kept
+	 * @param n - # of chromosomes
+	 */
+	void prepare(double[] fitness, int n);
+
+	/**
+	 * select a parent
+	 * @param random - the source of random numbers in [0, 1)
+	 * @return the index of the parent in the population
+	 */
+	int select(DoubleSupplier random);
+}
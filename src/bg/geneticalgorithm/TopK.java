@@ -0,0 +1,123 @@
+package bg.geneticalgorithm;
+
+/**
+ * Partial selection of the chromosomes with the highest adaptability on
+ * primitive arrays: a quickselect moves the top k indices to the front,
+ * and only those k are sorted.
+ *
+ * @author Qiyu Chen
+ *
+ */
+final class TopK {
+	private static final int INSERTION_SORT_SIZE = 16; // ranges sorted by insertion
+
+	private TopK() {
+	}
+
+	/**
+	 * rearrange index[0..n) so that index[0..k) are the indices of the k
+	 * highest keys in descending order
+	 * @param keys - the adaptabilities, looked up through index
+	 * @param index - the indices to rearrange
+	 * @param n - # of indices
+	 * @param k - # of top indices
+	 */
+	static void select(double[] keys, int[] index, int n, int k) {
+		if (k <= 0 || n <= 0) {
+			return;
+		}
+		k = Math.min(k, n);
+
+		// quickselect so that index[0..k) hold the k highest keys
+		int lo = 0, hi = n - 1;
+		while (hi - lo > INSERTION_SORT_SIZE) {
+			int p = partition(keys, index, lo, hi);
+			if (p < k) {
+				lo = p + 1;
+			} else if (p > k) {
+				hi = p - 1;
+			} else {
+				break;
+			}
+		}
+		if (hi - lo <= INSERTION_SORT_SIZE) {
+			insertionSort(keys, index, lo, hi);
+		}
+
+		sort(keys, index, 0, k - 1);
+	}
+
+	/**
+	 * sort index[lo..hi] by descending keys
+	 */
+	private static void sort(double[] keys, int[] index, int lo, int hi) {
+		while (hi - lo > INSERTION_SORT_SIZE) {
+			int p = partition(keys, index, lo, hi);
+			// recurse into the smaller side
+			if (p - lo < hi - p) {
+				sort(keys, index, lo, p - 1);
+				lo = p + 1;
+			} else {
+				sort(keys, index, p + 1, hi);
+				hi = p - 1;
+			}
+		}
+		insertionSort(keys, index, lo, hi);
+	}
+
+	/**
+	 * partition index[lo..hi] around a median-of-three pivot, higher keys first
+	 * @return the final position of the pivot
+	 */
+	private static int partition(double[] keys, int[] index, int lo, int hi) {
+		int mid = (lo + hi) >>> 1;
+		if (keys[index[mid]] > keys[index[lo]]) {
+			swap(index, mid, lo);
+		}
+		if (keys[index[hi]] > keys[index[lo]]) {
+			swap(index, hi, lo);
+		}
+		if (keys[index[hi]] > keys[index[mid]]) {
+			swap(index, hi, mid);
+		}
+		// now keys lo >= mid >= hi; use mid as pivot, kept at hi - 1
+		swap(index, mid, hi - 1);
+		double pivot = keys[index[hi - 1]];
+
+		int i = lo, j = hi - 1;
+		while (true) {
+			while (keys[index[++i]] > pivot) {
+			}
+			while (keys[index[--j]] < pivot) {
+			}
+			if (i >= j) {
+				break;
+			}
+			swap(index, i, j);
+		}
+		swap(index, i, hi - 1);
+		return i;
+	}
+
+	/**
+	 * sort index[lo..hi] by descending keys
+	 */
+	private static void insertionSort(double[] keys, int[] index, int lo, int hi) {
+		for (int i = lo + 1; i <= hi; i++) {
+			int value = index[i];
+			double key = keys[value];
+			int j = i - 1;
+			while (j >= lo && keys[index[j]] < key) {
+				index[j + 1] = index[j];
+				j--;
+			}
+			index[j + 1] = value;
+		}
+	}
+
+	private static void swap(int[] index, int i, int j) {
+		int temp = index[i];
+		index[i] = index[j];
+		index[j] = temp;
+	}
+}
@@ -0,0 +1,78 @@
+package bg.geneticalgorithm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import bg.dataset.OutcomeTable;
+import bg.metrics.Metrics;
+
+/**
+ * The round robin of co-evolution: the adaptability of a chromosome is its
+ * score against every other chromosome of its generation instead of
+ * against the data arrangements.
+ *
+ * The generation is indexed once as the data arrangements of an
+ * OutcomeTable, one bit per chromosome, and every chromosome is scored
+ * against the table by bit-parallel counting, so n chromosomes cost n
+ * table scores of n/64 words each instead of n*n comparisons. The scores
+ * are split into slices on the workers.
+ *
+ * A chromosome ties itself at every castle, which adds half a point to its
+ * score against the table, so that half point is taken off.
+ *
+ * @author Qiyu Chen
+ *
+ */
+final class Tournament {
+	private static final int MIN_SLICE = 64; // # of chromosomes a worker scores at least
+
+	private Tournament() {
+	}
+
+	/**
+	 * score every chromosome against the others
+	 * @param population - the chromosomes, which get their scores of the round robin
+	 * @param pool - the workers
+	 */
+	static void score(List<Chromosome> population, ForkJoinPool pool) {
+		int n = population.size();
+		int[][] genes = new int[n][];
+		for (int i = 0; i < n; i++) {
+			genes[i] = population.get(i).getGenes();
+		}
+		OutcomeTable table = new OutcomeTable(genes);
+
+		int slices = Math.max(1, Math.min(pool.getParallelism(), n / MIN_SLICE));
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(slices);
+		for (int t = 0; t < slices; t++) {
+			int from = t * n / slices, to = (t+1) * n / slices;
+			tasks.add(() -> {
+				int cols = Chromosome.GENE_SIZE;
+				int[] batch = new int[(to - from) * cols];
+				double[] scores = new double[to - from];
+				for (int i = from; i < to; i++) {
+					System.arraycopy(genes[i], 0, batch, (i - from) * cols, cols);
+				}
+
+				table.scoreAll(batch, 0, to - from, scores, 0);
+				for (int i = from; i < to; i++) {
+					population.get(i).setAdaptability(scores[i - from] - 0.5);
+				}
+				return null;
+			});
+		}
+
+		for (Future<Void> future : pool.invokeAll(tasks)) {
+			try {
+				future.get();
+			} catch (InterruptedException | ExecutionException e) {
+				throw new IllegalStateException("failed to score the round robin", e);
+			}
+		}
+		Metrics.get().evaluated(n);
+	}
+}
@@ -0,0 +1,48 @@
+package bg.geneticalgorithm;
+
+import java.util.function.DoubleSupplier;
+
+/**
+ * The Tournament Selection: the best of a few random chromosomes is 
+ * selected. Each parent costs O(rounds) regardless of the population size.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class TournamentSelection implements Selection {
+	private final int rounds; // # of chromosomes in a tournament
+
+	private double[] fitness = new double[0];
+	private int n;
+
+	/**
+	 * @param rounds - # of chromosomes competing in each tournament
+	 */
+	public TournamentSelection(int rounds) {
+		if (rounds <= 0) {
+			throw new IllegalArgumentException("invalid tournament size: " + rounds);
+		}
+		this.rounds = rounds;
+	}
+
+	@Override
+	public void prepare(double[] fitness, int n) {
+		if (this.fitness.length < n) {
+			this.fitness = new double[n];
+		}
+		System.arraycopy(fitness, 0, this.fitness, 0, n);
+		this.n = n;
+	}
+
+	@Override
+	public int select(DoubleSupplier random) {
+		int best = (int)(random.getAsDouble() * n);
+		for (int i = 1; i < rounds; i++) {
+			int other = (int)(random.getAsDouble() * n);
+			if (fitness[other] > fitness[best]) {
+				best = other;
+			}
+		}
+		return best;
+	}
+}
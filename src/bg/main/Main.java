@@ -22,7 +22,10 @@ public class Main {
 	 */
 	public static void main(String[] args) throws IOException {
 		ReadExcel readExcel = new ReadExcel(); // read in the data from an excel file
+//		bg.geneticalgorithm.Chromosome.enableCache(1 << 16, bg.geneticalgorithm.FitnessCache.Policy.CLOCK); // cache the scores of evaluated arrangements
 		GeneticAlgorithm ga = new GeneticAlgorithm(1500); // initialize ga with a population size 
+//		GeneticAlgorithm ga = new GeneticAlgorithm(1500, Runtime.getRuntime().availableProcessors(), 42); // evolve on every core with a seed
+//		ga.setCoevolution(true); // score against the population itself by a round robin
 
 		// Test the score of individual arrangement of resources
 		int[] arr = {2, 1, 16, 17, 20, 19, 17, 2, 3, 3};
@@ -34,14 +37,54 @@ public class Main {
 		
 		// Use the genetic algorithm once to search for the best
 //		ga.simulate(400); // simulate the population for a given number of the evolutions
+//		ga.setReporter(new bg.metrics.ProgressReporter(System.out, bg.metrics.ProgressReporter.Format.JSON, 10, 1, java.util.concurrent.TimeUnit.SECONDS)); // report in the background
+//		new bg.geneticalgorithm.FlatPopulation(100000, 42).simulate(400); // a large population stored in flat arrays
 		
 		
 		// Use the genetic algorithm for multiple times to search for the best
 		ga.multiSimulate(400, 1000); // first arg: # of evolution; second arg: # of simulations 
+//		ga.multiSimulate(400, 1000, java.nio.file.Paths.get("multiSimulate.ckpt")); // resumes from the checkpoint if there is one
+		ga.close(); // shut down the workers of the genetic algorithm
+		
+		
+		// Use several populations at the same time that exchange their best to search for the best
+//		new bg.geneticalgorithm.IslandModel(8, 1500, 25, 15, 42).simulate(400); // islands, size, migration interval, migrants, seed
+		
+		
+		// Compare the genetic algorithm, simulated annealing and tabu search on the same budget
+//		bg.engine.EngineHarness.main(new String[] {"10", "3"}); // millions of arrangements scored, runs of each engine
 		
 		
 		// Use the brute force method to exhaust every possibility to find the best 
 //		readExcel.findBest();
+//		readExcel.findBest(java.nio.file.Paths.get("findBest.ckpt")); // resumes from the checkpoint if there is one
+		
+		
+		// Use every core to exhaust every possibility to find the best
+//		System.out.println("best: " + new bg.search.ParallelSearch().search());
+//		System.out.println("best: " + new bg.search.ParallelSearch().search(java.nio.file.Paths.get("search.ckpt"))); // resumable
+//		System.out.println("best: " + new bg.search.MinimalChangeSearch().search()); // moving one soldier a step
+		
+		
+		// Score every possibility for the distribution of the scores instead of only the best
+//		new bg.search.LandscapeAnalysis().analyze(java.nio.file.Paths.get("landscape.bin")).print(System.out); // with every arrangement from 65
+		
+		
+		// Split the exhaustive search or the simulations among workers in other JVMs
+//		bg.cluster.Coordinator.main(new String[] {"search", "7071"}); // or {"ga", "7071", "1500", "400", "1000", "10"}
+//		bg.cluster.Worker.main(new String[] {"localhost", "7071"}); // in every worker JVM, on this host or on others
+		
+		
+		// Prove the best by branch and bound, starting from a known arrangement
+//		bg.search.BranchAndBound bnb = new bg.search.BranchAndBound();
+//		bnb.seed(arr); // e.g. the best ever of the genetic algorithm
+//		System.out.println("best: " + bnb.search());
+		
+		
+		// Prove the best by joining the first castles with a table of the last ones
+//		bg.search.MeetInTheMiddle mitm = new bg.search.MeetInTheMiddle();
+//		mitm.seed(arr);
+//		System.out.println("best: " + mitm.search());
 	}
 
 }
@@ -0,0 +1,29 @@
+package bg.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * The periodic JFR event of the arrangements scored since the last one.
+ *
+ * @author Qiyu Chen
+ *
+ */
+@Name("bg.EvaluationRate")
+@Label("Evaluation Rate")
+@Category("Blotto Game")
+@Description("The arrangements scored per second")
+@Period("1 s")
+@StackTrace(false)
+class EvaluationRateEvent extends Event {
+	@Label("Evaluations")
+	long evaluations;
+
+	@Label("Evaluations per Second")
+	double perSecond;
+}
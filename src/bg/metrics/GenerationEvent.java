@@ -0,0 +1,54 @@
+package bg.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The JFR event of one generation of the genetic algorithm, with the time
+ * of each of its phases.
+ *
+ * @author Qiyu Chen
+ *
+ */
+@Name("bg.Generation")
+@Label("Generation")
+@Category("Blotto Game")
+@Description("One generation of the genetic algorithm")
+@StackTrace(false)
+class GenerationEvent extends Event {
+	@Label("Generation")
+	int generation;
+
+	@Label("Population")
+	int population;
+
+	@Label("Crossover")
+	@Timespan(Timespan.NANOSECONDS)
+	long crossover;
+
+	@Label("Mutation")
+	@Timespan(Timespan.NANOSECONDS)
+	long mutation;
+
+	@Label("Reproduction")
+	@Timespan(Timespan.NANOSECONDS)
+	long reproduction;
+
+	@Label("Bookkeeping")
+	@Timespan(Timespan.NANOSECONDS)
+	long bookkeeping;
+
+	@Label("Best Fitness")
+	double best;
+
+	@Label("Average Fitness")
+	double average;
+
+	@Label("Cache Hit Rate")
+	double cacheHitRate;
+}
@@ -0,0 +1,90 @@
+package bg.metrics;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * The information of one generation of the genetic algorithm handed to a
+ * ProgressReporter. It is immutable, so the reporter formats it on its own
+ * thread while the population evolves on.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public final class GenerationSnapshot {
+	private final int generation;
+	private final int[] best; // the best genes of the generation
+	private final double bestScore;
+	private final double average; // the average score of the generation
+	private final int[] bestEver; // the best genes in all generations
+	private final double bestEverScore;
+	private final long nanos; // the time the snapshot was taken
+
+	/**
+	 * @param generation
+	 * @param best - the best genes of the generation, copied
+	 * @param bestScore
+	 * @param average - the average score of the generation
+	 * @param bestEver - the best genes in all generations, copied
+	 * @param bestEverScore
+	 */
+	public GenerationSnapshot(int generation, int[] best, double bestScore, double average,
+			int[] bestEver, double bestEverScore) {
+		this.generation = generation;
+		this.best = best.clone();
+		this.bestScore = bestScore;
+		this.average = average;
+		this.bestEver = bestEver.clone();
+		this.bestEverScore = bestEverScore;
+		this.nanos = System.nanoTime();
+	}
+
+	/**
+	 * @return the lines printInfo() of the genetic algorithm prints
+	 */
+	String toText() {
+		return "~~~~~~~~~~~~~~~~~~~~" + System.lineSeparator()
+				+ "\tGeneration: " + generation + System.lineSeparator()
+				+ "\tBest generation: " + Arrays.toString(best) + System.lineSeparator()
+				+ "\tBest score: " + bestScore + System.lineSeparator()
+				+ "\tAverage score: " + average + System.lineSeparator()
+				+ "\tBest generation so far: " + Arrays.toString(bestEver) + System.lineSeparator()
+				+ "\tBest score so far: " + bestEverScore + System.lineSeparator()
+				+ "~~~~~~~~~~~~~~~~~~~~";
+	}
+
+	/**
+	 * @param start - the time the elapsed milliseconds are counted from
+	 * @return one line of JSON
+	 */
+	String toJson(long start) {
+		return String.format(Locale.ROOT, "{\"generation\":%d,\"elapsedMillis\":%.3f,\"best\":%s,\"bestGenes\":%s,"
+				+ "\"average\":%s,\"bestEver\":%s,\"bestEverGenes\":%s}",
+				generation, (nanos - start) / 1e6, bestScore, Arrays.toString(best).replace(" ", ""),
+				average, bestEverScore, Arrays.toString(bestEver).replace(" ", ""));
+	}
+
+	public int getGeneration() {
+		return generation;
+	}
+
+	public int[] getBest() {
+		return best.clone();
+	}
+
+	public double getBestScore() {
+		return bestScore;
+	}
+
+	public double getAverage() {
+		return average;
+	}
+
+	public int[] getBestEver() {
+		return bestEver.clone();
+	}
+
+	public double getBestEverScore() {
+		return bestEverScore;
+	}
+}
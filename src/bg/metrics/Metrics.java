@@ -0,0 +1,277 @@
+package bg.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import jdk.jfr.FlightRecorder;
+
+/**
+ * The metrics of the genetic algorithm and of the exhaustive searches,
+ * published through JMX as bg:type=Metrics and as JFR events in the
+ * category "Blotto Game", so that long runs can be watched with JConsole
+ * or recorded with -XX:StartFlightRecording instead of reading prints.
+ *
+ * The counters are LongAdders, so that the threads scoring arrangements do
+ * not contend on them. A JFR event is only built when JFR records it.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class Metrics implements MetricsMXBean {
+	public static final String NAME = "bg:type=Metrics"; // the JMX name
+
+	private static final Metrics INSTANCE = register(new Metrics());
+
+	private final LongAdder evaluations = new LongAdder(); // # of arrangements scored
+	private volatile long resetTime = System.nanoTime();
+
+	private final LongAdder generations = new LongAdder();
+	private final LongAdder crossover = new LongAdder(); // nanoseconds in crossover
+	private final LongAdder mutation = new LongAdder(); // nanoseconds in mutation
+	private final LongAdder reproduction = new LongAdder(); // nanoseconds in reproduction
+	private final LongAdder bookkeeping = new LongAdder(); // nanoseconds finding the best and total
+	private volatile double bestFitness = Double.NaN; // of the last generation
+	private volatile double averageFitness = Double.NaN; // of the last generation
+	private volatile double cacheHitRate;
+
+	private volatile String searchEngine = "";
+	private volatile long searchSpace; // # of arrangements to check
+	private final AtomicLong searchVisited = new AtomicLong(); // # of arrangements checked
+	private volatile double searchBest = Double.NaN;
+
+	private long lastEvaluations; // the evaluations at the last rate event
+	private long lastRateTime; // the time of the last rate event
+
+	/**
+	 * @return the metrics of this JVM
+	 */
+	public static Metrics get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * register the metrics as MBean and hook the periodic JFR event, which
+	 * only prints a warning if either is not available
+	 */
+	private static Metrics register(Metrics metrics) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, new ObjectName(NAME));
+		} catch (JMException | SecurityException e) {
+			System.err.println("the metrics are not published through JMX: " + e);
+		}
+
+		try {
+			FlightRecorder.addPeriodicEvent(EvaluationRateEvent.class, metrics::emitRate);
+		} catch (IllegalStateException | SecurityException e) {
+			System.err.println("the evaluation rate is not published through JFR: " + e);
+		}
+		return metrics;
+	}
+
+	/**
+	 * count an arrangement scored
+	 */
+	public void evaluated() {
+		evaluations.increment();
+	}
+
+	/**
+	 * count several arrangements scored
+	 * @param count - # of arrangements
+	 */
+	public void evaluated(long count) {
+		evaluations.add(count);
+	}
+
+	/**
+	 * record a generation of the genetic algorithm
+	 * @param generation - the number of the generation
+	 * @param population - the population size
+	 * @param crossoverNanos - the time of crossover
+	 * @param mutationNanos - the time of mutation
+	 * @param reproductionNanos - the time of reproduction
+	 * @param bookkeepingNanos - the time to find the best and total
+	 * @param best - the best score of the generation
+	 * @param average - the average score of the generation
+	 * @param hitRate - the hit rate of the fitness caches
+	 */
+	public void generation(int generation, int population, long crossoverNanos, long mutationNanos,
+			long reproductionNanos, long bookkeepingNanos, double best, double average, double hitRate) {
+		generations.increment();
+		crossover.add(crossoverNanos);
+		mutation.add(mutationNanos);
+		reproduction.add(reproductionNanos);
+		bookkeeping.add(bookkeepingNanos);
+		bestFitness = best;
+		averageFitness = average;
+		cacheHitRate = hitRate;
+
+		GenerationEvent event = new GenerationEvent();
+		if (event.shouldCommit()) {
+			event.generation = generation;
+			event.population = population;
+			event.crossover = crossoverNanos;
+			event.mutation = mutationNanos;
+			event.reproduction = reproductionNanos;
+			event.bookkeeping = bookkeepingNanos;
+			event.best = best;
+			event.average = average;
+			event.cacheHitRate = hitRate;
+			event.commit();
+		}
+	}
+
+	/**
+	 * start following an exhaustive search
+	 * @param engine - the name of the search
+	 * @param space - # of arrangements to check
+	 */
+	public void searchStarted(String engine, long space) {
+		searchEngine = engine;
+		searchSpace = space;
+		searchVisited.set(0);
+		searchBest = Double.NaN;
+	}
+
+	/**
+	 * count arrangements checked by the search
+	 * @param count - # of arrangements checked since the last call
+	 */
+	public void searched(long count) {
+		long visited = searchVisited.addAndGet(count);
+
+		SearchProgressEvent event = new SearchProgressEvent();
+		if (event.shouldCommit()) {
+			event.engine = searchEngine;
+			event.visited = visited;
+			event.space = searchSpace;
+			event.progress = searchSpace == 0 ? 0 : (double)visited / searchSpace;
+			event.best = searchBest;
+			event.commit();
+		}
+	}
+
+	/**
+	 * @param score - a score found by the search, kept if it is the best
+	 */
+	public synchronized void searchBest(double score) {
+		if (Double.isNaN(searchBest) || score > searchBest) {
+			searchBest = score;
+		}
+	}
+
+	/**
+	 * commit the periodic event of the evaluations since the last one
+	 */
+	private synchronized void emitRate() {
+		long now = System.nanoTime();
+		long total = evaluations.sum();
+		EvaluationRateEvent event = new EvaluationRateEvent();
+		event.evaluations = total - lastEvaluations;
+		event.perSecond = lastRateTime == 0 ? 0 : event.evaluations * 1e9 / (now - lastRateTime);
+		event.commit();
+
+		lastEvaluations = total;
+		lastRateTime = now;
+	}
+
+	@Override
+	public long getEvaluations() {
+		return evaluations.sum();
+	}
+
+	@Override
+	public double getEvaluationsPerSecond() {
+		return evaluations.sum() * 1e9 / Math.max(1, System.nanoTime() - resetTime);
+	}
+
+	@Override
+	public long getGenerations() {
+		return generations.sum();
+	}
+
+	@Override
+	public double getAverageCrossoverMillis() {
+		return perGeneration(crossover);
+	}
+
+	@Override
+	public double getAverageMutationMillis() {
+		return perGeneration(mutation);
+	}
+
+	@Override
+	public double getAverageReproductionMillis() {
+		return perGeneration(reproduction);
+	}
+
+	@Override
+	public double getAverageBookkeepingMillis() {
+		return perGeneration(bookkeeping);
+	}
+
+	private double perGeneration(LongAdder nanos) {
+		long count = generations.sum();
+		return count == 0 ? 0 : nanos.sum() / 1e6 / count;
+	}
+
+	@Override
+	public double getBestFitness() {
+		return bestFitness;
+	}
+
+	@Override
+	public double getAverageFitness() {
+		return averageFitness;
+	}
+
+	@Override
+	public double getCacheHitRate() {
+		return cacheHitRate;
+	}
+
+	@Override
+	public String getSearchEngine() {
+		return searchEngine;
+	}
+
+	@Override
+	public long getSearchVisited() {
+		return searchVisited.get();
+	}
+
+	@Override
+	public long getSearchSpace() {
+		return searchSpace;
+	}
+
+	@Override
+	public double getSearchProgressPercent() {
+		long space = searchSpace;
+		return space == 0 ? 0 : 100.0 * searchVisited.get() / space;
+	}
+
+	@Override
+	public double getSearchBest() {
+		return searchBest;
+	}
+
+	@Override
+	public void reset() {
+		evaluations.reset();
+		resetTime = System.nanoTime();
+		generations.reset();
+		crossover.reset();
+		mutation.reset();
+		reproduction.reset();
+		bookkeeping.reset();
+		bestFitness = Double.NaN;
+		averageFitness = Double.NaN;
+		cacheHitRate = 0;
+		searchStarted("", 0);
+	}
+}
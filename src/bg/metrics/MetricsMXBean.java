@@ -0,0 +1,80 @@
+package bg.metrics;
+
+/**
+ * The metrics of the genetic algorithm and of the exhaustive searches as
+ * seen through JMX, e.g. in JConsole or VisualVM under bg:type=Metrics.
+ * Times are averages per generation since the last reset.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public interface MetricsMXBean {
+
+	/**
+	 * @return the number of arrangements scored since the last reset
+	 */
+	long getEvaluations();
+
+	/**
+	 * @return the arrangements scored per second since the last reset
+	 */
+	double getEvaluationsPerSecond();
+
+	/**
+	 * @return the number of generations evolved since the last reset
+	 */
+	long getGenerations();
+
+	double getAverageCrossoverMillis();
+
+	double getAverageMutationMillis();
+
+	double getAverageReproductionMillis();
+
+	double getAverageBookkeepingMillis();
+
+	/**
+	 * @return the best score of the last generation
+	 */
+	double getBestFitness();
+
+	/**
+	 * @return the average score of the last generation
+	 */
+	double getAverageFitness();
+
+	/**
+	 * @return the hit rate of the fitness caches, 0 if there is none
+	 */
+	double getCacheHitRate();
+
+	/**
+	 * @return the name of the last exhaustive search started
+	 */
+	String getSearchEngine();
+
+	/**
+	 * @return the number of arrangements checked by the search
+	 */
+	long getSearchVisited();
+
+	/**
+	 * @return the number of arrangements in the search space
+	 */
+	long getSearchSpace();
+
+	/**
+	 * @return the percentage of the search space checked
+	 */
+	double getSearchProgressPercent();
+
+	/**
+	 * @return the best score found by the search
+	 */
+	double getSearchBest();
+
+	/**
+	 * clear every metric
+	 */
+	void reset();
+}
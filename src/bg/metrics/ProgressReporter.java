@@ -0,0 +1,143 @@
+package bg.metrics;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reports the progress of the genetic algorithm on a background thread, so
+ * that the evolution does not wait on the console. The evolving thread
+ * hands immutable GenerationSnapshots to the reporter through a bounded
+ * lock-free queue, and a snapshot is dropped rather than waited for when
+ * the queue is full.
+ *
+ * A generation is sampled every given number of generations and/or every
+ * given time, and printed as the lines of printInfo() or as one line of
+ * JSON per generation.
+ *
+ * report() must only be called by one thread at a time.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class ProgressReporter implements AutoCloseable {
+	private static final int CAPACITY = 1024; // # of snapshots waiting at most
+
+	/**
+	 * the output format
+	 */
+	public enum Format {
+		TEXT, // the lines of printInfo()
+		JSON // one JSON object per line
+	}
+
+	private final PrintStream out;
+	private final Format format;
+	private final int everyGenerations; // 0 to not sample by generations
+	private final long everyNanos; // 0 to not sample by time
+	private final long start = System.nanoTime();
+	private long lastSample = start; // the time of the last snapshot, only used by the producer
+
+	private final SpscQueue<GenerationSnapshot> queue = new SpscQueue<GenerationSnapshot>(CAPACITY);
+	private final Thread consumer;
+	private volatile boolean closed;
+	private volatile long dropped; // # of snapshots dropped on a full queue, written by the producer
+
+	/**
+	 * report every generation as text on System.out
+	 */
+	public ProgressReporter() {
+		this(System.out, Format.TEXT, 1, 0, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param out - where the snapshots are printed
+	 * @param format
+	 * @param everyGenerations - sample every this many generations, 0 for never
+	 * @param every - sample after this time since the last sample, 0 for never
+	 * @param unit - the unit of every
+	 */
+	public ProgressReporter(PrintStream out, Format format, int everyGenerations, long every, TimeUnit unit) {
+		if (everyGenerations < 0 || every < 0 || (everyGenerations == 0 && every == 0)) {
+			throw new IllegalArgumentException("invalid sampling");
+		}
+
+		this.out = out;
+		this.format = format;
+		this.everyGenerations = everyGenerations;
+		this.everyNanos = unit.toNanos(every);
+
+		consumer = new Thread(this::run, "progress-reporter");
+		consumer.setDaemon(true);
+		consumer.start();
+	}
+
+	/**
+	 * @param generation - the number of the generation
+	 * @return whether the generation is to be sampled, checked before taking
+	 * the snapshot
+	 */
+	public boolean isDue(int generation) {
+		return (everyGenerations > 0 && generation % everyGenerations == 0)
+				|| (everyNanos > 0 && System.nanoTime() - lastSample >= everyNanos);
+	}
+
+	/**
+	 * hand a snapshot to the background thread without waiting
+	 * @param snapshot
+	 */
+	public void report(GenerationSnapshot snapshot) {
+		lastSample = System.nanoTime();
+		if (queue.offer(snapshot)) {
+			LockSupport.unpark(consumer);
+		} else {
+			dropped++;
+		}
+	}
+
+	/**
+	 * print the snapshots until closed, a batch at a time
+	 */
+	private void run() {
+		StringBuilder batch = new StringBuilder();
+		while (true) {
+			boolean last = closed; // the snapshots reported before close are all in the queue
+			GenerationSnapshot snapshot;
+			while ((snapshot = queue.poll()) != null) {
+				batch.append(format == Format.JSON ? snapshot.toJson(start) : snapshot.toText());
+				batch.append(System.lineSeparator());
+			}
+			if (batch.length() > 0) {
+				out.print(batch);
+				out.flush();
+				batch.setLength(0);
+			}
+
+			if (last) {
+				return;
+			}
+			LockSupport.park(this);
+		}
+	}
+
+	/**
+	 * @return the number of snapshots dropped because the queue was full
+	 */
+	public long getDropped() {
+		return dropped;
+	}
+
+	/**
+	 * print the snapshots reported so far and stop the background thread
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		LockSupport.unpark(consumer);
+		try {
+			consumer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,38 @@
+package bg.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.StackTrace;
+
+/**
+ * The JFR event of the progress of an exhaustive search.
+ *
+ * @author Qiyu Chen
+ *
+ */
+@Name("bg.SearchProgress")
+@Label("Search Progress")
+@Category("Blotto Game")
+@Description("The arrangements checked by an exhaustive search")
+@StackTrace(false)
+class SearchProgressEvent extends Event {
+	@Label("Engine")
+	String engine;
+
+	@Label("Visited")
+	long visited;
+
+	@Label("Search Space")
+	long space;
+
+	@Label("Progress")
+	@Percentage
+	double progress;
+
+	@Label("Best Score")
+	double best;
+}
@@ -0,0 +1,73 @@
+package bg.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded lock-free queue for one producer thread and one consumer
+ * thread, on a ring buffer of a power of two slots. offer() never blocks:
+ * it fails when the queue is full.
+ *
+ * The producer writes a slot and then publishes it by an ordered write of
+ * the tail, and the consumer frees a slot by an ordered write of the head,
+ * so neither thread takes a lock or spins on the other.
+ *
+ * @author Qiyu Chen
+ *
+ */
+class SpscQueue<E> {
+	private final Object[] buffer;
+	private final int mask; // # of slots - 1
+
+	private final AtomicLong head = new AtomicLong(); // the next slot to poll, written by the consumer
+	private final AtomicLong tail = new AtomicLong(); // the next slot to offer, written by the producer
+	private long headCache; // the head last read by the producer
+
+	/**
+	 * @param capacity - # of elements at most, rounded up to a power of two
+	 */
+	SpscQueue(int capacity) {
+		if (capacity <= 0 || capacity > 1 << 30) {
+			throw new IllegalArgumentException("invalid capacity: " + capacity);
+		}
+		int slots = Integer.highestOneBit(capacity);
+		if (slots < capacity) {
+			slots <<= 1;
+		}
+		buffer = new Object[slots];
+		mask = slots - 1;
+	}
+
+	/**
+	 * add an element, only called by the producer
+	 * @return false if the queue is full
+	 */
+	boolean offer(E e) {
+		long t = tail.get();
+		if (t - headCache > mask) {
+			headCache = head.get();
+			if (t - headCache > mask) {
+				return false;
+			}
+		}
+		buffer[(int)t & mask] = e;
+		tail.lazySet(t + 1);
+		return true;
+	}
+
+	/**
+	 * take the oldest element, only called by the consumer
+	 * @return null if the queue is empty
+	 */
+	@SuppressWarnings("unchecked")
+	E poll() {
+		long h = head.get();
+		if (h == tail.get()) {
+			return null;
+		}
+		int slot = (int)h & mask;
+		E e = (E)buffer[slot];
+		buffer[slot] = null;
+		head.lazySet(h + 1);
+		return e;
+	}
+}
@@ -0,0 +1,194 @@
+package bg.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import bg.dataset.OutcomeTable;
+import bg.dataset.ReadExcel;
+
+/**
+ * The exact search for the global maximum score by branch and bound. The
+ * castles are assigned one at a time while keeping, for every data
+ * arrangement, the castle wins minus castle losses decided so far. A
+ * subtree is cut off when an optimistic bound on its score cannot beat the
+ * best arrangement found so far, which can be seeded, e.g. by the bestEver
+ * of the genetic algorithm.
+ *
+ * The bound assumes that every data arrangement is played separately with
+ * the soldiers left: for each data arrangement, castle from which to
+ * assign, and number of soldiers left, the best margin reachable on the
+ * remaining castles is precomputed, so the bound of a node costs one
+ * lookup per data arrangement.
+ *
+ * Scores are kept in half points, 2 for each win and 1 for each tie.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class BranchAndBound {
+	private static final int SPLIT_DEPTH = 2; // castles assigned before the subtrees run in parallel
+
+	private final int[][] dataset;
+	private final int rows; // # of data arrangements
+	private final int cols; // # of castles
+	private final int soldiers;
+	private final int maxPerCastle;
+	private final ForkJoinPool pool;
+
+	private final ReachTable reach; // the best margins on the castles not assigned yet
+
+	private final SharedIncumbent best = new SharedIncumbent();
+	private final AtomicLong nodes = new AtomicLong(); // # of nodes visited
+
+	/**
+	 * search 100 soldiers in 10 castles against the excel data on every core
+	 */
+	public BranchAndBound() {
+		this(ReadExcel.getArray(), Compositions.SOLDIERS, Compositions.MAX_PER_CASTLE, ForkJoinPool.commonPool());
+	}
+
+	public BranchAndBound(int[][] dataset, int soldiers, int maxPerCastle, ForkJoinPool pool) {
+		this.dataset = dataset;
+		this.rows = dataset.length;
+		this.cols = rows == 0 ? 0 : dataset[0].length;
+		this.soldiers = soldiers;
+		this.maxPerCastle = maxPerCastle;
+		this.pool = pool;
+
+		this.reach = new ReachTable(dataset, 0, cols, soldiers, maxPerCastle);
+	}
+
+	/**
+	 * start from a known arrangement, so that only better ones are searched
+	 * @param genes - a valid arrangement
+	 */
+	public void seed(int[] genes) {
+		best.offer(new OutcomeTable(dataset).halfPoints(genes, 0), genes);
+	}
+
+	/**
+	 * search the whole space
+	 * @return the best arrangement, proven optimal, null if there is none
+	 */
+	public Incumbent search() {
+		int[] arr = new int[cols];
+		int[][] margins = new int[cols + 1][rows];
+		pool.invoke(new SubtreeTask(arr, margins, 0, soldiers));
+		return best.get();
+	}
+
+	/**
+	 * search the subtree below the castles assigned before col
+	 * @param arr - the castles assigned so far
+	 * @param margins - margins[col] holds the margins after the castles before col
+	 * @param col - the castle to assign
+	 * @param left - # of soldiers left
+	 * @return the number of nodes visited
+	 */
+	private long search(int[] arr, int[][] margins, int col, int left) {
+		int[] margin = margins[col];
+
+		if (col == cols) {
+			int points = 0;
+			for (int row = 0; row < rows; row++) {
+				points += margin[row] > 0 ? 2 : margin[row] == 0 ? 1 : 0;
+			}
+			best.offer(points, arr);
+			return 1;
+		}
+
+		// the optimistic bound of this subtree
+		int bound = 0;
+		for (int row = 0; row < rows; row++) {
+			int reachable = margin[row] + reach.get(col, row, left);
+			bound += reachable > 0 ? 2 : reachable == 0 ? 1 : 0;
+		}
+		if (bound <= best.getPoints()) {
+			return 1;
+		}
+
+		int castlesAfter = cols - col - 1;
+		int min = Math.max(0, left - castlesAfter * maxPerCastle);
+		int max = Math.min(maxPerCastle, left);
+		if (castlesAfter == 0) {
+			min = left; // the last castle takes every soldier left
+		}
+
+		long visited = 1;
+		int[] next = margins[col + 1];
+		for (int v = max; v >= min; v--) {
+			arr[col] = v;
+			for (int row = 0; row < rows; row++) {
+				next[row] = margin[row] + Integer.signum(v - dataset[row][col]);
+			}
+			visited += search(arr, margins, col + 1, left - v);
+		}
+		return visited;
+	}
+
+	/**
+	 * @return the number of nodes visited so far
+	 */
+	public long getNodes() {
+		return nodes.get();
+	}
+
+	/**
+	 * the task to search a subtree, split into one task per value of the
+	 * castle while col < SPLIT_DEPTH
+	 */
+	private class SubtreeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int[] arr;
+		private final int[][] margins;
+		private final int col;
+		private final int left;
+
+		SubtreeTask(int[] arr, int[][] margins, int col, int left) {
+			this.arr = arr;
+			this.margins = margins;
+			this.col = col;
+			this.left = left;
+		}
+
+		@Override
+		protected void compute() {
+			if (col >= SPLIT_DEPTH || col >= cols - 1) {
+				nodes.addAndGet(search(arr, margins, col, left));
+				return;
+			}
+
+			List<SubtreeTask> tasks = new ArrayList<SubtreeTask>();
+			int castlesAfter = cols - col - 1;
+			for (int v = Math.min(maxPerCastle, left); v >= Math.max(0, left - castlesAfter * maxPerCastle); v--) {
+				int[] childArr = arr.clone();
+				int[][] childMargins = new int[cols + 1][];
+				for (int c = 0; c <= cols; c++) {
+					childMargins[c] = c <= col ? margins[c] : new int[rows];
+				}
+
+				childArr[col] = v;
+				for (int row = 0; row < rows; row++) {
+					childMargins[col + 1][row] = margins[col][row] + Integer.signum(v - dataset[row][col]);
+				}
+				tasks.add(new SubtreeTask(childArr, childMargins, col + 1, left - v));
+			}
+			invokeAll(tasks);
+		}
+	}
+
+	public static void main(String[] args) {
+		BranchAndBound search = new BranchAndBound();
+		search.seed(new int[] {2, 1, 16, 17, 20, 19, 17, 2, 3, 3});
+
+		long start = System.currentTimeMillis();
+		Incumbent best = search.search();
+		System.out.println("best: " + best);
+		System.out.println("nodes: " + search.getNodes());
+		System.out.println("time: " + (System.currentTimeMillis() - start) / 1000 + "s");
+	}
+}
@@ -0,0 +1,161 @@
+package bg.search;
+
+/**
+ * The bounded compositions of a number of soldiers into a number of castles
+ * where every castle holds at most a given number of soldiers. The
+ * compositions are ordered lexicographically so that every arrangement has a
+ * rank in [0, size()) and the search space can be split into independent
+ * index ranges.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class Compositions {
+	public static final int CASTLES = 10; // # of castles
+	public static final int SOLDIERS = 100; // a total of 100 soldiers
+	public static final int MAX_PER_CASTLE = 22; // max soldiers at a castle worth checking
+
+	private final int castles;
+	private final int soldiers;
+	private final int maxPerCastle;
+
+	// counts[k][s]: # of ways to put s soldiers into k castles
+	private final long[][] counts;
+
+	/**
+	 * the compositions of 100 soldiers into 10 castles with at most 22 each
+	 */
+	public Compositions() {
+		this(CASTLES, SOLDIERS, MAX_PER_CASTLE);
+	}
+
+	public Compositions(int castles, int soldiers, int maxPerCastle) {
+		if (castles <= 0 || soldiers < 0 || maxPerCastle < 0) {
+			throw new IllegalArgumentException("invalid composition bounds");
+		}
+
+		this.castles = castles;
+		this.soldiers = soldiers;
+		this.maxPerCastle = maxPerCastle;
+
+		counts = new long[castles+1][soldiers+1];
+		counts[0][0] = 1;
+		for (int k = 1; k <= castles; k++) {
+			for (int s = 0; s <= soldiers; s++) {
+				long sum = 0;
+				for (int v = 0; v <= maxPerCastle && v <= s; v++) {
+					sum += counts[k-1][s-v];
+				}
+				counts[k][s] = sum;
+			}
+		}
+	}
+
+	/**
+	 * @return the number of valid arrangements
+	 */
+	public long size() {
+		return counts[castles][soldiers];
+	}
+
+	/**
+	 * @param k - number of castles
+	 * @param s - number of soldiers
+	 * @return the number of ways to put s soldiers into k castles
+	 */
+	public long count(int k, int s) {
+		if (k < 0 || s < 0 || k > castles || s > soldiers) {
+			return 0;
+		}
+		return counts[k][s];
+	}
+
+	/**
+	 * the lexicographic rank of an arrangement
+	 * @param arr - a valid arrangement
+	 * @return its index in [0, size())
+	 */
+	public long rank(int[] arr) {
+		long rank = 0;
+		int rest = soldiers;
+
+		for (int pos = 0; pos < castles; pos++) {
+			int left = castles - pos - 1; // castles after pos
+			for (int v = 0; v < arr[pos]; v++) {
+				rank += count(left, rest-v);
+			}
+			rest -= arr[pos];
+		}
+
+		return rank;
+	}
+
+	/**
+	 * write the arrangement with the given rank into arr
+	 * @param rank - index in [0, size())
+	 * @param arr - the array to be filled
+	 */
+	public void unrank(long rank, int[] arr) {
+		if (rank < 0 || rank >= size()) {
+			throw new IllegalArgumentException("rank out of range: " + rank);
+		}
+
+		int rest = soldiers;
+		for (int pos = 0; pos < castles; pos++) {
+			int left = castles - pos - 1;
+			int v = 0;
+			long c;
+			while ((c = count(left, rest-v)) <= rank) {
+				rank -= c;
+				v++;
+			}
+			arr[pos] = v;
+			rest -= v;
+		}
+	}
+
+	/**
+	 * move arr to the next arrangement in lexicographic order in place
+	 * @param arr - a valid arrangement
+	 * @return false if arr was the last arrangement
+	 */
+	public boolean next(int[] arr) {
+		int suffix = arr[castles-1]; // soldiers after pos
+
+		for (int pos = castles - 2; pos >= 0; pos--) {
+			int left = castles - pos - 1;
+			if (arr[pos] < maxPerCastle && suffix > 0
+					&& suffix - 1 <= left * maxPerCastle) {
+				arr[pos]++;
+				fillSmallest(arr, pos + 1, suffix - 1);
+				return true;
+			}
+			suffix += arr[pos];
+		}
+
+		return false;
+	}
+
+	/**
+	 * fill arr from pos with the lexicographically smallest arrangement of
+	 * the given soldiers, i.e. pack them into the last castles
+	 */
+	private void fillSmallest(int[] arr, int pos, int rest) {
+		for (int i = castles - 1; i >= pos; i--) {
+			arr[i] = Math.min(rest, maxPerCastle);
+			rest -= arr[i];
+		}
+	}
+
+	public int getCastles() {
+		return castles;
+	}
+
+	public int getSoldiers() {
+		return soldiers;
+	}
+
+	public int getMaxPerCastle() {
+		return maxPerCastle;
+	}
+}
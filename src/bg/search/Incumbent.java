@@ -0,0 +1,41 @@
+package bg.search;
+
+import java.util.Arrays;
+
+/**
+ * The best arrangement found by a search, or in a part of its space,
+ * together with its score. A search of a space with no arrangement in it,
+ * e.g. more soldiers than its castles can hold, returns null instead.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class Incumbent {
+	private final double score;
+	private final int[] genes;
+
+	public Incumbent(double score, int[] genes) {
+		this.score = score;
+		this.genes = genes;
+	}
+
+	/**
+	 * @return the better one of the two, a on tie
+	 */
+	public static Incumbent better(Incumbent a, Incumbent b) {
+		return b.score > a.score ? b : a;
+	}
+
+	public double getScore() {
+		return score;
+	}
+
+	public int[] getGenes() {
+		return genes;
+	}
+
+	@Override
+	public String toString() {
+		return score + " : " + Arrays.toString(genes);
+	}
+}
@@ -0,0 +1,276 @@
+package bg.search;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * The score landscape of a set of arrangements: how many arrangements get
+ * each score, and for the arrangements scoring at least a given score, how
+ * many soldiers they put at each castle. Scores are counted in half points,
+ * 2 for each win and 1 for each tie, as OutcomeTable.halfPoints().
+ *
+ * Landscapes of disjoint sets of arrangements merge into the landscape of
+ * their union, so every thread fills its own and they are merged at the end.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class Landscape {
+	private final int castles;
+	private final int maxPerCastle;
+	private final int topHalf; // the least half points of the arrangements in the marginals
+
+	private final long[] histogram; // histogram[h]: # of arrangements of h half points
+	// marginals[((h - topHalf) * castles + castle) * (maxPerCastle + 1) + soldiers]:
+	// # of arrangements of h half points with the soldiers at the castle
+	private final long[] marginals;
+
+	/**
+	 * @param castles - # of castles of an arrangement
+	 * @param maxPerCastle - max soldiers at a castle
+	 * @param rows - # of data arrangements
+	 * @param topHalf - the least half points of the arrangements whose
+	 * soldiers per castle are counted
+	 */
+	public Landscape(int castles, int maxPerCastle, int rows, int topHalf) {
+		if (topHalf < 0 || topHalf > 2 * rows) {
+			throw new IllegalArgumentException("invalid top score: " + topHalf / 2.0);
+		}
+
+		this.castles = castles;
+		this.maxPerCastle = maxPerCastle;
+		this.topHalf = topHalf;
+		this.histogram = new long[2 * rows + 1];
+		this.marginals = new long[(2 * rows + 1 - topHalf) * castles * (maxPerCastle + 1)];
+	}
+
+	/**
+	 * count an arrangement
+	 * @param halfPoints - its score in half points
+	 * @param arr - the arrangement
+	 */
+	public void add(int halfPoints, int[] arr) {
+		histogram[halfPoints]++;
+		if (halfPoints >= topHalf) {
+			int base = (halfPoints - topHalf) * castles * (maxPerCastle + 1);
+			for (int castle = 0; castle < castles; castle++) {
+				marginals[base + castle * (maxPerCastle + 1) + arr[castle]]++;
+			}
+		}
+	}
+
+	/**
+	 * add the counts of another landscape of the same shape
+	 */
+	public void merge(Landscape other) {
+		if (other.castles != castles || other.maxPerCastle != maxPerCastle || other.topHalf != topHalf
+				|| other.histogram.length != histogram.length) {
+			throw new IllegalArgumentException("landscapes of different shapes");
+		}
+
+		for (int h = 0; h < histogram.length; h++) {
+			histogram[h] += other.histogram[h];
+		}
+		for (int i = 0; i < marginals.length; i++) {
+			marginals[i] += other.marginals[i];
+		}
+	}
+
+	/**
+	 * @return # of arrangements counted
+	 */
+	public long getTotal() {
+		long total = 0;
+		for (long count : histogram) {
+			total += count;
+		}
+		return total;
+	}
+
+	/**
+	 * @return # of arrangements of the score
+	 */
+	public long getCount(double score) {
+		int h = (int) Math.round(score * 2);
+		return h < 0 || h >= histogram.length ? 0 : histogram[h];
+	}
+
+	/**
+	 * @return the highest score counted, -1 if none
+	 */
+	public double getMaxScore() {
+		for (int h = histogram.length - 1; h >= 0; h--) {
+			if (histogram[h] > 0) {
+				return h / 2.0;
+			}
+		}
+		return -1;
+	}
+
+	public double getMean() {
+		double sum = 0;
+		for (int h = 0; h < histogram.length; h++) {
+			sum += (double) histogram[h] * h;
+		}
+		return sum / getTotal() / 2;
+	}
+
+	/**
+	 * @param q - in [0, 1]
+	 * @return the least score that at least a q fraction of the arrangements
+	 * do not exceed
+	 */
+	public double quantile(double q) {
+		long target = (long) Math.ceil(q * getTotal());
+		long seen = 0;
+		for (int h = 0; h < histogram.length; h++) {
+			seen += histogram[h];
+			if (seen >= target && seen > 0) {
+				return h / 2.0;
+			}
+		}
+		return getMaxScore();
+	}
+
+	/**
+	 * @param castle - index of the castle
+	 * @param minScore - not less than the top score of the landscape
+	 * @return # of the arrangements scoring at least minScore with each
+	 * number of soldiers at the castle
+	 */
+	public long[] getMarginal(int castle, double minScore) {
+		if (minScore * 2 < topHalf) {
+			throw new IllegalArgumentException("the soldiers of scores below " + topHalf / 2.0 + " are not counted");
+		}
+		int from = (int) Math.ceil(minScore * 2);
+
+		long[] counts = new long[maxPerCastle + 1];
+		for (int h = from; h < histogram.length; h++) {
+			int base = ((h - topHalf) * castles + castle) * (maxPerCastle + 1);
+			for (int soldiers = 0; soldiers <= maxPerCastle; soldiers++) {
+				counts[soldiers] += marginals[base + soldiers];
+			}
+		}
+		return counts;
+	}
+
+	/**
+	 * @return the mean soldiers at each castle of the arrangements scoring
+	 * at least minScore
+	 */
+	public double[] getMeanSoldiers(double minScore) {
+		double[] means = new double[castles];
+		for (int castle = 0; castle < castles; castle++) {
+			long[] counts = getMarginal(castle, minScore);
+			long total = 0;
+			double sum = 0;
+			for (int soldiers = 0; soldiers <= maxPerCastle; soldiers++) {
+				total += counts[soldiers];
+				sum += (double) counts[soldiers] * soldiers;
+			}
+			means[castle] = total == 0 ? Double.NaN : sum / total;
+		}
+		return means;
+	}
+
+	public double getTopScore() {
+		return topHalf / 2.0;
+	}
+
+	/**
+	 * print the distribution and the mean soldiers per castle of the top
+	 * arrangements
+	 */
+	public void print(PrintStream out) {
+		out.printf(Locale.ROOT, "arrangements: %d, mean: %.3f, median: %.1f, p99: %.1f, p99.99: %.1f, max: %.1f%n",
+				getTotal(), getMean(), quantile(0.5), quantile(0.99), quantile(0.9999), getMaxScore());
+
+		out.println("score     count  mean soldiers per castle");
+		for (int h = histogram.length - 1; h >= topHalf; h--) {
+			if (histogram[h] == 0) {
+				continue;
+			}
+			StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "%5.1f %9d ", h / 2.0, histogram[h]));
+			for (double mean : getMeanSoldiers(h / 2.0)) {
+				line.append(String.format(Locale.ROOT, " %5.2f", mean));
+			}
+			out.println(line);
+		}
+	}
+
+	/**
+	 * write the landscape, its counts as varints
+	 */
+	public void writeTo(DataOutput out) throws IOException {
+		out.writeInt(castles);
+		out.writeInt(maxPerCastle);
+		out.writeInt(topHalf);
+		out.writeInt(histogram.length);
+		for (long count : histogram) {
+			writeVarint(out, count);
+		}
+		for (long count : marginals) {
+			writeVarint(out, count);
+		}
+	}
+
+	/**
+	 * @return the landscape written by writeTo()
+	 */
+	public static Landscape readFrom(DataInput in) throws IOException {
+		int castles = in.readInt();
+		int maxPerCastle = in.readInt();
+		int topHalf = in.readInt();
+		int levels = in.readInt();
+		if (castles <= 0 || maxPerCastle < 0 || levels <= 0 || levels % 2 == 0) {
+			throw new IOException("not a landscape");
+		}
+
+		Landscape landscape = new Landscape(castles, maxPerCastle, levels / 2, topHalf);
+		for (int h = 0; h < levels; h++) {
+			landscape.histogram[h] = readVarint(in);
+		}
+		for (int i = 0; i < landscape.marginals.length; i++) {
+			landscape.marginals[i] = readVarint(in);
+		}
+		return landscape;
+	}
+
+	/**
+	 * write a non-negative value 7 bits a byte, the lowest first
+	 */
+	static void writeVarint(DataOutput out, long value) throws IOException {
+		while ((value & ~0x7FL) != 0) {
+			out.writeByte((int) (value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte((int) value);
+	}
+
+	static long readVarint(DataInput in) throws IOException {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+		throw new IOException("malformed varint");
+	}
+
+	/**
+	 * @return the value with its sign in the lowest bit, so that small
+	 * negative deltas are small varints
+	 */
+	static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+}
@@ -0,0 +1,475 @@
+package bg.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import bg.dataset.OutcomeTable;
+import bg.dataset.ReadExcel;
+import bg.metrics.Metrics;
+
+/**
+ * The exhaustive analysis of the score landscape. Like ParallelSearch it
+ * walks every rank on a ForkJoin pool, but instead of keeping the best
+ * arrangement it counts every score into a Landscape of its thread, and
+ * the landscapes of the threads are merged at the end.
+ *
+ * The arrangements scoring at least dumpScore, one in sampleEvery of them
+ * picked by a hash of the rank, can be written to a file. The file holds a
+ * header, then a block of samples per leaf range in the order the leaves
+ * end, then the merged landscape. A block is columnar: the rank deltas,
+ * the score deltas and the gene deltas of each castle, as varints, each
+ * column after its length, all deflated. Neighbouring ranks share most of
+ * their genes, so most deltas take a byte before deflating and much less
+ * after.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class LandscapeAnalysis {
+	private static final int MAGIC = 0x424C4C53; // "BLLS"
+	private static final int VERSION = 1;
+	private static final int END = 0, BLOCK = 1; // the tags of the records after the header
+	private static final long LEAF_SIZE = 1L << 22; // # of arrangements a worker scans at once
+	private static final int BLOCK_SAMPLES = 1 << 16; // max samples in a block
+
+	private final Compositions compositions;
+	private final OutcomeTable table;
+	private final ForkJoinPool pool;
+	private final int topHalf; // the least half points of the arrangements in the marginals
+	private final int dumpHalf; // the least half points of the arrangements written
+	private final int sampleEvery; // 1 in sampleEvery of them is written
+
+	private final List<Local> locals = new ArrayList<Local>(); // guarded by itself
+	private ThreadLocal<Local> local;
+	private DataOutputStream out; // the file, guarded by itself, null if none
+	private final AtomicLong samples = new AtomicLong(); // # of arrangements written
+
+	/**
+	 * analyze 100 soldiers in 10 castles against the excel data on every
+	 * core, counting the soldiers of the scores from 60 and writing every
+	 * arrangement from 65
+	 */
+	public LandscapeAnalysis() {
+		this(new Compositions(), ReadExcel.getArray(), ForkJoinPool.commonPool(), 60, 65, 1);
+	}
+
+	/**
+	 * @param topScore - the least score of the arrangements whose soldiers
+	 * per castle are counted
+	 * @param dumpScore - the least score of the arrangements written
+	 * @param sampleEvery - 1 in sampleEvery of them is written
+	 */
+	public LandscapeAnalysis(Compositions compositions, int[][] dataset, ForkJoinPool pool, double topScore,
+			double dumpScore, int sampleEvery) {
+		if (sampleEvery < 1) {
+			throw new IllegalArgumentException("invalid sampling: " + sampleEvery);
+		}
+
+		this.compositions = compositions;
+		this.table = new OutcomeTable(dataset);
+		this.pool = pool;
+		this.topHalf = (int) Math.ceil(topScore * 2);
+		this.dumpHalf = (int) Math.ceil(dumpScore * 2);
+		this.sampleEvery = sampleEvery;
+	}
+
+	/**
+	 * score every arrangement
+	 * @param file - the file to write the samples and the landscape to,
+	 * null for none
+	 * @return the landscape of every arrangement
+	 * @throws IOException if the file cannot be written
+	 */
+	public Landscape analyze(Path file) throws IOException {
+		long size = compositions.size();
+		Metrics.get().searchStarted("LandscapeAnalysis", size);
+		samples.set(0);
+		locals.clear();
+		local = ThreadLocal.withInitial(() -> {
+			Local l = new Local();
+			synchronized (locals) {
+				locals.add(l);
+			}
+			return l;
+		});
+
+		try (DataOutputStream stream = file == null ? null
+				: new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+			if (stream != null) {
+				stream.writeInt(MAGIC);
+				stream.writeInt(VERSION);
+				stream.writeInt(compositions.getCastles());
+				stream.writeInt(compositions.getSoldiers());
+				stream.writeInt(compositions.getMaxPerCastle());
+				stream.writeInt(table.getRows());
+				stream.writeInt(dumpHalf);
+				stream.writeInt(sampleEvery);
+			}
+			out = stream;
+
+			try {
+				pool.invoke(new RangeTask(0, size));
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+
+			Landscape landscape = new Landscape(compositions.getCastles(), compositions.getMaxPerCastle(),
+					table.getRows(), topHalf);
+			synchronized (locals) {
+				for (Local l : locals) {
+					landscape.merge(l.landscape);
+				}
+			}
+
+			if (stream != null) {
+				stream.writeByte(END);
+				landscape.writeTo(stream);
+			}
+			return landscape;
+		} finally {
+			out = null;
+			local = null;
+		}
+	}
+
+	/**
+	 * scan a range on the current thread
+	 */
+	private void scan(long from, long to) {
+		Local l = local.get();
+		int[] arr = l.arr;
+		boolean dump = out != null;
+
+		compositions.unrank(from, arr);
+		for (long rank = from; rank < to; rank++) {
+			int halfPoints = table.halfPoints(arr, 0);
+			l.landscape.add(halfPoints, arr);
+			if (dump && halfPoints >= dumpHalf && sampled(rank)) {
+				l.block.add(rank, halfPoints, arr);
+				if (l.block.count == BLOCK_SAMPLES) {
+					flush(l.block);
+				}
+			}
+			compositions.next(arr);
+		}
+		if (dump) {
+			flush(l.block);
+		}
+
+		Metrics metrics = Metrics.get();
+		metrics.evaluated(to - from);
+		metrics.searched(to - from);
+	}
+
+	/**
+	 * @return whether the arrangement of the rank is one of the samples, the
+	 * same on every run
+	 */
+	private boolean sampled(long rank) {
+		if (sampleEvery == 1) {
+			return true;
+		}
+
+		// the finalizer of SplitMix64
+		long z = rank * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z ^= z >>> 31;
+		return Long.remainderUnsigned(z, sampleEvery) == 0;
+	}
+
+	/**
+	 * write the block to the file, if it holds any sample
+	 */
+	private void flush(Block block) {
+		if (block.count == 0) {
+			return;
+		}
+
+		try {
+			byte[] deflated = block.deflate();
+			synchronized (out) {
+				out.writeByte(BLOCK);
+				out.writeLong(block.firstRank);
+				out.writeInt(block.count);
+				out.writeInt(block.rawLength);
+				out.writeInt(deflated.length);
+				out.write(deflated);
+			}
+			samples.addAndGet(block.count);
+			block.clear();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return # of arrangements written by the last analyze()
+	 */
+	public long getSamples() {
+		return samples.get();
+	}
+
+	public Compositions getCompositions() {
+		return compositions;
+	}
+
+	/**
+	 * a sample read from a file
+	 */
+	public interface Sample {
+		void accept(long rank, double score, int[] genes);
+	}
+
+	/**
+	 * read a file written by analyze()
+	 * @param file - the file
+	 * @param sample - given every sample in the order of the file, null to
+	 * skip them
+	 * @return the landscape of every arrangement
+	 * @throws IOException if the file is not one of analyze()
+	 */
+	public static Landscape read(Path file, Sample sample) throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException(file + " is not a landscape file");
+			}
+			int castles = in.readInt();
+			in.readInt(); // soldiers
+			in.readInt(); // maxPerCastle
+			in.readInt(); // rows
+			in.readInt(); // dumpHalf
+			in.readInt(); // sampleEvery
+
+			Inflater inflater = new Inflater();
+			try {
+				while (true) {
+					int tag = in.readByte();
+					if (tag == END) {
+						return Landscape.readFrom(in);
+					} else if (tag != BLOCK) {
+						throw new IOException("unknown record " + tag + " in " + file);
+					}
+
+					long firstRank = in.readLong();
+					int count = in.readInt();
+					byte[] raw = new byte[in.readInt()];
+					byte[] deflated = new byte[in.readInt()];
+					in.readFully(deflated);
+					if (sample == null) {
+						continue;
+					}
+
+					inflater.reset();
+					inflater.setInput(deflated);
+					if (inflater.inflate(raw) != raw.length || !inflater.finished()) {
+						throw new IOException("a corrupt block in " + file);
+					}
+					decode(raw, castles, firstRank, count, sample);
+				}
+			} catch (DataFormatException e) {
+				throw new IOException("a corrupt block in " + file, e);
+			} catch (EOFException e) {
+				throw new IOException(file + " is cut short", e);
+			} finally {
+				inflater.end();
+			}
+		}
+	}
+
+	/**
+	 * give the samples of the columns of a block
+	 */
+	private static void decode(byte[] raw, int castles, long firstRank, int count, Sample sample) throws IOException {
+		// a stream at the start of each column
+		DataInputStream[] columns = new DataInputStream[castles + 2];
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw));
+		for (int c = 0; c < columns.length; c++) {
+			int length = (int) Landscape.readVarint(in);
+			int start = raw.length - in.available();
+			columns[c] = new DataInputStream(new ByteArrayInputStream(raw, start, length));
+			in.skipBytes(length);
+		}
+
+		long rank = firstRank;
+		int halfPoints = 0;
+		int[] genes = new int[castles];
+		for (int i = 0; i < count; i++) {
+			rank += Landscape.readVarint(columns[0]);
+			halfPoints += (int) Landscape.unzigzag(Landscape.readVarint(columns[1]));
+			for (int c = 0; c < castles; c++) {
+				genes[c] += (int) Landscape.unzigzag(Landscape.readVarint(columns[c + 2]));
+			}
+			sample.accept(rank, halfPoints / 2.0, genes.clone());
+		}
+	}
+
+	/**
+	 * the state of a thread: its landscape and the block of samples it fills
+	 */
+	private class Local {
+		final int[] arr = new int[compositions.getCastles()];
+		final Landscape landscape = new Landscape(compositions.getCastles(), compositions.getMaxPerCastle(),
+				table.getRows(), topHalf);
+		final Block block = new Block(compositions.getCastles());
+	}
+
+	/**
+	 * the samples of a leaf range, encoded in columns
+	 */
+	private static class Block {
+		final ByteArrayOutputStream[] bytes; // the ranks, the half points, and the genes of each castle
+		final DataOutputStream[] columns;
+		final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		long firstRank, lastRank;
+		int lastHalf;
+		final int[] lastGenes;
+		int count;
+		int rawLength; // # of bytes of the columns, set by deflate()
+
+		Block(int castles) {
+			bytes = new ByteArrayOutputStream[castles + 2];
+			columns = new DataOutputStream[castles + 2];
+			for (int c = 0; c < columns.length; c++) {
+				bytes[c] = new ByteArrayOutputStream();
+				columns[c] = new DataOutputStream(bytes[c]);
+			}
+			lastGenes = new int[castles];
+		}
+
+		void add(long rank, int halfPoints, int[] arr) {
+			try {
+				if (count == 0) {
+					firstRank = lastRank = rank;
+				}
+				Landscape.writeVarint(columns[0], rank - lastRank);
+				Landscape.writeVarint(columns[1], Landscape.zigzag(halfPoints - lastHalf));
+				for (int c = 0; c < lastGenes.length; c++) {
+					Landscape.writeVarint(columns[c + 2], Landscape.zigzag(arr[c] - lastGenes[c]));
+					lastGenes[c] = arr[c];
+				}
+				lastRank = rank;
+				lastHalf = halfPoints;
+				count++;
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		/**
+		 * @return the columns, each after its length, deflated
+		 */
+		byte[] deflate() throws IOException {
+			ByteArrayOutputStream raw = new ByteArrayOutputStream();
+			DataOutputStream rawOut = new DataOutputStream(raw);
+			for (ByteArrayOutputStream column : bytes) {
+				Landscape.writeVarint(rawOut, column.size());
+				column.writeTo(rawOut);
+			}
+			rawLength = raw.size();
+
+			deflater.reset();
+			deflater.setInput(raw.toByteArray());
+			deflater.finish();
+			ByteArrayOutputStream deflated = new ByteArrayOutputStream(rawLength / 4 + 64);
+			byte[] buffer = new byte[1 << 14];
+			while (!deflater.finished()) {
+				deflated.write(buffer, 0, deflater.deflate(buffer));
+			}
+			return deflated.toByteArray();
+		}
+
+		void clear() {
+			for (ByteArrayOutputStream column : bytes) {
+				column.reset();
+			}
+			Arrays.fill(lastGenes, 0);
+			lastHalf = 0;
+			count = 0;
+		}
+	}
+
+	/**
+	 * the task to scan a range of ranks by splitting it in half
+	 */
+	private class RangeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final long from;
+		private final long to;
+
+		RangeTask(long from, long to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= LEAF_SIZE) {
+				scan(from, to);
+				return;
+			}
+
+			long mid = from + (to - from) / 2;
+			invokeAll(new RangeTask(from, mid), new RangeTask(mid, to));
+		}
+	}
+
+	/**
+	 * @param args - "analyze" [file [castles soldiers maxPerCastle topScore
+	 * dumpScore sampleEvery]], or "read" file
+	 */
+	public static void main(String[] args) throws IOException {
+		String mode = args.length > 0 ? args[0] : "analyze";
+		Path file = Paths.get(args.length > 1 ? args[1] : "landscape.bin");
+
+		if (mode.equals("read")) {
+			long[] count = new long[1];
+			Landscape landscape = read(file, (rank, score, genes) -> count[0]++);
+			landscape.print(System.out);
+			System.out.println("samples: " + count[0]);
+			return;
+		}
+
+		LandscapeAnalysis analysis;
+		if (args.length > 7) {
+			int castles = Integer.parseInt(args[2]);
+			int[][] dataset = ReadExcel.getArray(); // the first castles of the excel data
+			for (int row = 0; row < dataset.length; row++) {
+				dataset[row] = Arrays.copyOf(dataset[row], castles);
+			}
+			analysis = new LandscapeAnalysis(
+					new Compositions(castles, Integer.parseInt(args[3]), Integer.parseInt(args[4])), dataset,
+					ForkJoinPool.commonPool(), Double.parseDouble(args[5]), Double.parseDouble(args[6]),
+					Integer.parseInt(args[7]));
+		} else {
+			analysis = new LandscapeAnalysis();
+		}
+		System.out.println("arrangements: " + analysis.getCompositions().size());
+
+		long start = System.currentTimeMillis();
+		Landscape landscape = analysis.analyze(file);
+		landscape.print(System.out);
+		System.out.println("samples: " + analysis.getSamples() + ", " + Files.size(file) + " bytes in " + file);
+		System.out.println("time: " + (System.currentTimeMillis() - start) / 1000 + "s");
+	}
+}
@@ -0,0 +1,397 @@
+package bg.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import bg.dataset.OutcomeTable;
+import bg.dataset.ReadExcel;
+
+/**
+ * The exact search for the global maximum score by meet in the middle. The
+ * castles are split into a head and a tail: every assignment of the tail
+ * is enumerated once into a table, bucketed by its number of soldiers, and
+ * the head is searched by branch and bound. Each head that cannot be cut
+ * off is joined with the tail assignments that use exactly the soldiers
+ * left.
+ *
+ * The margins against the data arrangements are packed into byte lanes, 8
+ * data arrangements to a long, each lane holding BIAS plus the margin. A
+ * head and a tail add up to 2*BIAS plus the total margin in each lane, so
+ * the top bit of a lane tells a win or a tie and the top bit of the lane
+ * minus one tells a win: a pair is scored with an addition and two
+ * popcounts per 8 data arrangements. The bound of a head is scored the
+ * same way against the best margins of the castles left, and a castle is
+ * assigned by adding the lanes it wins and subtracting the lanes it loses.
+ *
+ * Tail assignments with the same number of soldiers and the same margins
+ * are kept once. The tail is short, so that its table stays in the cache:
+ * with half of the castles in each, the bound of a half cuts off almost
+ * nothing and the two tables do not fit in memory.
+ *
+ * Scores are kept in half points, 2 for each win and 1 for each tie.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class MeetInTheMiddle {
+	public static final int TAIL_CASTLES = 3; // # of castles in the table
+	private static final int SPLIT_DEPTH = 2; // castles assigned before the subtrees run in parallel
+	private static final int BIAS = 64; // the value of a byte lane for margin 0
+	private static final long LOW = 0x0101010101010101L; // 1 in every byte lane
+	private static final long HIGH = 0x8080808080808080L; // the top bit of every byte lane
+
+	private final int[][] dataset;
+	private final int rows; // # of data arrangements
+	private final int cols; // # of castles
+	private final int split; // the first castle of the tail
+	private final int words; // # of longs of the margins against every data arrangement
+	private final int soldiers;
+	private final int maxPerCastle;
+	private final ForkJoinPool pool;
+	private final OutcomeTable table;
+
+	// the lanes won and lost by each value of each castle of the head:
+	// [(col*(maxPerCastle+1) + v)*words + word]
+	private final long[] wins;
+	private final long[] losses;
+
+	// BIAS-1 plus the best margin on the castles col.. with s soldiers:
+	// [(col*(soldiers+1) + s)*words + word]
+	private final long[] reach;
+
+	// the tail assignments, BIAS-1 plus their margins, bucketed by soldiers
+	private long[] tailLanes;
+	private byte[] tailGenes;
+	private int[] bucket; // bucket[s]: the first tail assignment with s soldiers
+
+	private final SharedIncumbent best = new SharedIncumbent();
+	private final AtomicLong pairs = new AtomicLong(); // # of head and tail pairs scored
+
+	/**
+	 * search 100 soldiers in 10 castles against the excel data on every core
+	 */
+	public MeetInTheMiddle() {
+		this(ReadExcel.getArray(), Compositions.SOLDIERS, Compositions.MAX_PER_CASTLE, ForkJoinPool.commonPool());
+	}
+
+	public MeetInTheMiddle(int[][] dataset, int soldiers, int maxPerCastle, ForkJoinPool pool) {
+		this.dataset = dataset;
+		this.rows = dataset.length;
+		this.cols = rows == 0 ? 0 : dataset[0].length;
+		this.split = Math.max(0, cols - TAIL_CASTLES);
+		this.words = (rows + 7) / 8;
+		this.soldiers = soldiers;
+		this.maxPerCastle = maxPerCastle;
+		this.pool = pool;
+		this.table = new OutcomeTable(dataset);
+
+		if (cols >= BIAS / 2 || maxPerCastle > Byte.MAX_VALUE) {
+			throw new IllegalArgumentException("too many castles or soldiers in a castle");
+		}
+
+		wins = new long[split * (maxPerCastle + 1) * words];
+		losses = new long[split * (maxPerCastle + 1) * words];
+		for (int col = 0; col < split; col++) {
+			for (int v = 0; v <= maxPerCastle; v++) {
+				int base = (col * (maxPerCastle + 1) + v) * words;
+				for (int row = 0; row < rows; row++) {
+					long lane = 1L << (row % 8 * 8);
+					if (v > dataset[row][col]) {
+						wins[base + row / 8] |= lane;
+					} else if (v < dataset[row][col]) {
+						losses[base + row / 8] |= lane;
+					}
+				}
+			}
+		}
+
+		ReachTable bestMargins = new ReachTable(dataset, 0, cols, soldiers, maxPerCastle);
+		int[] margin = new int[rows];
+		reach = new long[(split + 1) * (soldiers + 1) * words];
+		for (int col = 0; col <= split; col++) {
+			for (int s = 0; s <= soldiers; s++) {
+				for (int row = 0; row < rows; row++) {
+					margin[row] = bestMargins.get(col, row, s);
+				}
+				pack(margin, reach, (col * (soldiers + 1) + s) * words);
+			}
+		}
+
+		buildTail();
+	}
+
+	/**
+	 * pack margins into byte lanes holding BIAS-1 plus the margin, and the
+	 * unused lanes BIAS-2, which never add up to a win or a tie with a head
+	 */
+	private void pack(int[] margin, long[] lanes, int base) {
+		for (int word = 0; word < words; word++) {
+			long packed = 0;
+			for (int lane = 7; lane >= 0; lane--) {
+				int row = word * 8 + lane;
+				packed = packed << 8 | (row < rows ? BIAS - 1 + margin[row] : BIAS - 2);
+			}
+			lanes[base + word] = packed;
+		}
+	}
+
+	/**
+	 * @return BIAS+1 in every lane, the lanes of a head before any castle,
+	 * so that a tail adds up to 2*BIAS plus the total margin
+	 */
+	private long[] headStart() {
+		long[] lanes = new long[words];
+		Arrays.fill(lanes, LOW * (BIAS + 1));
+		return lanes;
+	}
+
+	/**
+	 * enumerate every assignment of the tail, sort each bucket of soldiers
+	 * by margins and keep one of each margins
+	 */
+	private void buildTail() {
+		int width = cols - split;
+		List<int[]> assignments = new ArrayList<int[]>();
+		int[] arr = new int[width];
+		while (true) {
+			assignments.add(arr.clone());
+			int col = width - 1;
+			while (col >= 0 && arr[col] == maxPerCastle) {
+				arr[col--] = 0;
+			}
+			if (col < 0) {
+				break;
+			}
+			arr[col]++;
+		}
+
+		long[] lanes = new long[assignments.size() * words];
+		int[] spent = new int[assignments.size()];
+		int[] margin = new int[rows];
+		for (int i = 0; i < assignments.size(); i++) {
+			int[] tail = assignments.get(i);
+			Arrays.fill(margin, 0);
+			for (int col = 0; col < width; col++) {
+				spent[i] += tail[col];
+				for (int row = 0; row < rows; row++) {
+					margin[row] += Integer.signum(tail[col] - dataset[row][split + col]);
+				}
+			}
+			pack(margin, lanes, i * words);
+		}
+
+		Integer[] order = new Integer[assignments.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Comparator<Integer> byLanes = (a, b) -> {
+			for (int word = 0; word < words; word++) {
+				int c = Long.compare(lanes[a * words + word], lanes[b * words + word]);
+				if (c != 0) {
+					return c;
+				}
+			}
+			return 0;
+		};
+		Arrays.sort(order, Comparator.<Integer>comparingInt(i -> spent[i]).thenComparing(byLanes));
+
+		tailLanes = new long[order.length * words];
+		tailGenes = new byte[order.length * width];
+		bucket = new int[soldiers + 2];
+		int kept = 0;
+		for (int i = 0; i < order.length; i++) {
+			int index = order[i];
+			if (spent[index] > soldiers) {
+				break;
+			}
+			if (i > 0 && spent[order[i - 1]] == spent[index] && byLanes.compare(order[i - 1], index) == 0) {
+				continue; // the same margins with the same soldiers
+			}
+
+			System.arraycopy(lanes, index * words, tailLanes, kept * words, words);
+			int[] tail = assignments.get(index);
+			for (int col = 0; col < width; col++) {
+				tailGenes[kept * width + col] = (byte)tail[col];
+			}
+			bucket[spent[index] + 1] = ++kept;
+		}
+		for (int s = 1; s <= soldiers + 1; s++) {
+			bucket[s] = Math.max(bucket[s], bucket[s - 1]);
+		}
+	}
+
+	/**
+	 * start from a known arrangement, so that only better ones are searched
+	 * @param genes - a valid arrangement
+	 */
+	public void seed(int[] genes) {
+		best.offer(table.halfPoints(genes, 0), genes);
+	}
+
+	/**
+	 * search the whole space
+	 * @return the best arrangement, proven optimal, null if there is none
+	 */
+	public Incumbent search() {
+		long[][] lanes = new long[split + 1][];
+		lanes[0] = headStart();
+		for (int col = 1; col <= split; col++) {
+			lanes[col] = new long[words];
+		}
+		pool.invoke(new SubtreeTask(new int[cols], lanes, 0, soldiers));
+		return best.get();
+	}
+
+	/**
+	 * search the subtree below the castles of the head assigned before col
+	 * @param arr - the castles assigned so far
+	 * @param lanes - lanes[col] holds the margins after the castles before col
+	 * @param col - the castle to assign
+	 * @param left - # of soldiers left
+	 */
+	private void search(int[] arr, long[][] lanes, int col, int left) {
+		long[] head = lanes[col];
+		int target = best.getPoints();
+		if (halfPoints(head, 0, reach, (col * (soldiers + 1) + left) * words, target) <= target) {
+			return;
+		}
+
+		if (col == split) {
+			join(arr, head, left);
+			return;
+		}
+
+		int castlesAfter = cols - col - 1;
+		int min = Math.max(0, left - castlesAfter * maxPerCastle);
+		int max = Math.min(maxPerCastle, left);
+
+		long[] next = lanes[col + 1];
+		for (int v = max; v >= min; v--) {
+			arr[col] = v;
+			assign(head, next, col, v);
+			search(arr, lanes, col + 1, left - v);
+		}
+	}
+
+	/**
+	 * the lanes after assigning v soldiers to castle col
+	 */
+	private void assign(long[] head, long[] next, int col, int v) {
+		int base = (col * (maxPerCastle + 1) + v) * words;
+		for (int word = 0; word < words; word++) {
+			next[word] = head[word] + wins[base + word] - losses[base + word];
+		}
+	}
+
+	/**
+	 * score a head with every tail assignment of the soldiers left
+	 */
+	private void join(int[] arr, long[] head, int left) {
+		int width = cols - split;
+		long scored = 0;
+		for (int tail = bucket[left]; tail < bucket[left + 1]; tail++) {
+			int target = best.getPoints();
+			scored++;
+			if (halfPoints(head, 0, tailLanes, tail * words, target) > target) {
+				int[] found = arr.clone();
+				for (int col = 0; col < width; col++) {
+					found[split + col] = tailGenes[tail * width + col];
+				}
+				best.offer(table.halfPoints(found, 0), found);
+			}
+		}
+		pairs.addAndGet(scored);
+	}
+
+	/**
+	 * score a pair of lanes, stopping once it cannot beat target
+	 * @return the half points, or at most target if stopped early
+	 */
+	private int halfPoints(long[] a, int aBase, long[] b, int bBase, int target) {
+		int points = 0;
+		int rest = 2 * rows; // the most half points of the words not scored yet
+		for (int word = 0; word < words; word++) {
+			long sum = a[aBase + word] + b[bBase + word]; // 2*BIAS plus the margin in each lane
+			points += Long.bitCount(sum & HIGH) + Long.bitCount((sum - LOW) & HIGH);
+			rest -= 16;
+			if (points + rest <= target) {
+				break;
+			}
+		}
+		return points;
+	}
+
+	/**
+	 * @return the number of head and tail pairs scored so far
+	 */
+	public long getPairs() {
+		return pairs.get();
+	}
+
+	/**
+	 * @return the number of distinct tail assignments in the table
+	 */
+	public int getTailSize() {
+		return bucket[soldiers + 1];
+	}
+
+	/**
+	 * the task to search a subtree, split into one task per value of the
+	 * castle while col < SPLIT_DEPTH
+	 */
+	private class SubtreeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int[] arr;
+		private final long[][] lanes;
+		private final int col;
+		private final int left;
+
+		SubtreeTask(int[] arr, long[][] lanes, int col, int left) {
+			this.arr = arr;
+			this.lanes = lanes;
+			this.col = col;
+			this.left = left;
+		}
+
+		@Override
+		protected void compute() {
+			if (col >= SPLIT_DEPTH || col >= split) {
+				search(arr, lanes, col, left);
+				return;
+			}
+
+			List<SubtreeTask> tasks = new ArrayList<SubtreeTask>();
+			int castlesAfter = cols - col - 1;
+			for (int v = Math.min(maxPerCastle, left); v >= Math.max(0, left - castlesAfter * maxPerCastle); v--) {
+				long[][] childLanes = new long[split + 1][];
+				for (int c = 0; c <= split; c++) {
+					childLanes[c] = c <= col ? lanes[c] : new long[words];
+				}
+
+				int[] childArr = arr.clone();
+				childArr[col] = v;
+				assign(lanes[col], childLanes[col + 1], col, v);
+				tasks.add(new SubtreeTask(childArr, childLanes, col + 1, left - v));
+			}
+			invokeAll(tasks);
+		}
+	}
+
+	public static void main(String[] args) {
+		MeetInTheMiddle search = new MeetInTheMiddle();
+		System.out.println("tail assignments: " + search.getTailSize());
+		search.seed(new int[] {2, 1, 16, 17, 20, 19, 17, 2, 3, 3});
+
+		long start = System.currentTimeMillis();
+		Incumbent best = search.search();
+		System.out.println("best: " + best);
+		System.out.println("pairs: " + search.getPairs());
+		System.out.println("time: " + (System.currentTimeMillis() - start) / 1000 + "s");
+	}
+}
@@ -0,0 +1,344 @@
+package bg.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+import bg.dataset.ReadExcel;
+import bg.metrics.Metrics;
+
+/**
+ * The exhaustive search over every arrangement in a minimal change order
+ * instead of the lexicographic order of ReadExcel.findBest(). The
+ * arrangements are walked like a reflected Gray code: the values of a
+ * castle are walked up and down in turn, and the castles after it are
+ * walked forwards and backwards in turn for each value, so that nearly
+ * every step moves one soldier from one castle to another.
+ *
+ * The margins against the data arrangements and the score are kept up to
+ * date instead of comparing each arrangement from scratch. One more soldier
+ * in a castle only changes the outcome of the castle against the data
+ * arrangements with exactly that many soldiers or one less there, so a
+ * step touches a few data arrangements instead of all of them.
+ *
+ * Scores are kept in half points, 2 for each win and 1 for each tie.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class MinimalChangeSearch {
+	private static final int SPLIT_DEPTH = 2; // castles assigned before the walks run in parallel
+	private static final long REPORT_MASK = (1L << 24) - 1; // the metrics are updated every 2^24 arrangements
+
+	private final int rows; // # of data arrangements
+	private final int cols; // # of castles
+	private final int soldiers;
+	private final int maxPerCastle;
+	private final ForkJoinPool pool;
+
+	// the data arrangements sorted by their soldiers at each castle, so that
+	// rowsAt[start[col*(maxPerCastle+2) + v]..] have v soldiers at castle col
+	private final int[] rowsAt;
+	private final int[] start;
+	private final int[] emptyMargin; // the margins with no soldier in any castle
+
+	private final SharedIncumbent best = new SharedIncumbent();
+	private final AtomicLong visited = new AtomicLong(); // # of arrangements scored
+	private final AtomicLong moved = new AtomicLong(); // # of soldiers moved between them
+
+	/**
+	 * search 100 soldiers in 10 castles against the excel data on every core
+	 */
+	public MinimalChangeSearch() {
+		this(ReadExcel.getArray(), Compositions.SOLDIERS, Compositions.MAX_PER_CASTLE, ForkJoinPool.commonPool());
+	}
+
+	public MinimalChangeSearch(int[][] dataset, int soldiers, int maxPerCastle, ForkJoinPool pool) {
+		this.rows = dataset.length;
+		this.cols = rows == 0 ? 0 : dataset[0].length;
+		this.soldiers = soldiers;
+		this.maxPerCastle = maxPerCastle;
+		this.pool = pool;
+
+		if (cols == 0) {
+			throw new IllegalArgumentException("no castle");
+		}
+
+		// castles with more soldiers than maxPerCastle are lost whatever
+		rowsAt = new int[cols * rows];
+		start = new int[cols * (maxPerCastle + 2)];
+		int next = 0;
+		for (int col = 0; col < cols; col++) {
+			for (int v = 0; v <= maxPerCastle; v++) {
+				start[col * (maxPerCastle + 2) + v] = next;
+				for (int row = 0; row < rows; row++) {
+					if (dataset[row][col] == v) {
+						rowsAt[next++] = row;
+					}
+				}
+			}
+			start[col * (maxPerCastle + 2) + maxPerCastle + 1] = next;
+		}
+
+		emptyMargin = new int[rows];
+		for (int row = 0; row < rows; row++) {
+			for (int col = 0; col < cols; col++) {
+				emptyMargin[row] -= Integer.signum(dataset[row][col]);
+			}
+		}
+	}
+
+	/**
+	 * search the whole space
+	 * @return an arrangement of the best score, null if there is none
+	 */
+	public Incumbent search() {
+		long size = new Compositions(cols, soldiers, maxPerCastle).size();
+		Metrics.get().searchStarted("MinimalChangeSearch", size);
+		if (size == 0) {
+			return null;
+		}
+		pool.invoke(new WalkTask(new int[cols], 0));
+		return best.get();
+	}
+
+	/**
+	 * @return the number of arrangements scored so far
+	 */
+	public long getVisited() {
+		return visited.get();
+	}
+
+	/**
+	 * @return the average number of soldiers moved from one arrangement to
+	 * the next
+	 */
+	public double getMovesPerStep() {
+		return (double)moved.get() / Math.max(1, visited.get());
+	}
+
+	/**
+	 * the fewest soldiers of castle col with u soldiers for castles col..
+	 */
+	private int low(int col, int u) {
+		return Math.max(0, u - (cols - col - 1) * maxPerCastle);
+	}
+
+	/**
+	 * the most soldiers of castle col with u soldiers for castles col..
+	 */
+	private int high(int u) {
+		return Math.min(maxPerCastle, u);
+	}
+
+	/**
+	 * one walk over the arrangements with some castles fixed, keeping its
+	 * own margins and score
+	 */
+	private class Walker {
+		private final int[] arr; // the arrangement scored last
+		private final int[] margin; // castle wins minus castle losses against each data arrangement
+		private int points; // half points of arr
+		private int target; // the half points to beat
+		private long steps; // # of arrangements scored
+		private long moves; // # of soldiers moved
+
+		/**
+		 * start with no soldier in any castle
+		 */
+		Walker() {
+			arr = new int[cols];
+			margin = emptyMargin.clone();
+			for (int row = 0; row < rows; row++) {
+				points += margin[row] > 0 ? 2 : margin[row] == 0 ? 1 : 0;
+			}
+			target = best.getPoints();
+		}
+
+		/**
+		 * walk every arrangement of castles col.. with u soldiers, starting
+		 * from the first one of the direction, which is where arr is
+		 * @param forward - walk from the lowest to the highest value of col
+		 */
+		void walk(int col, int u, boolean forward) {
+			if (col == cols - 1) {
+				visit();
+				return;
+			}
+
+			int lo = low(col, u);
+			int hi = high(u);
+			int step = forward ? 1 : -1;
+			if (col == cols - 2) {
+				// the last castle takes the soldiers left: one move a step
+				for (int x = forward ? lo : hi; x != (forward ? hi : lo); x += step) {
+					visit();
+					if (forward) {
+						up(col);
+						down(col + 1);
+					} else {
+						down(col);
+						up(col + 1);
+					}
+				}
+				visit();
+				return;
+			}
+
+			for (int x = forward ? lo : hi; ; x += step) {
+				boolean subForward = ((x - lo) % 2 == 0) == forward;
+				walk(col + 1, u - x, subForward);
+				if (x == (forward ? hi : lo)) {
+					return;
+				}
+
+				set(col, x + step);
+				boolean nextForward = ((x + step - lo) % 2 == 0) == forward;
+				place(col + 1, u - x - step, nextForward);
+			}
+		}
+
+		/**
+		 * score the arrangement, which is kept if it beats the incumbent
+		 */
+		private void visit() {
+			if ((++steps & REPORT_MASK) == 0) {
+				report(REPORT_MASK + 1);
+			}
+			if (points > target) {
+				target = best.offer(points, arr);
+			}
+		}
+
+		/**
+		 * count arrangements scored in the metrics
+		 */
+		void report(long count) {
+			Metrics metrics = Metrics.get();
+			metrics.evaluated(count);
+			metrics.searched(count);
+		}
+
+		/**
+		 * move castles col.. with u soldiers to the first arrangement of a
+		 * walk, which is the last one of the walk the other way
+		 * @param forward - the direction of the walk
+		 */
+		void place(int col, int u, boolean forward) {
+			if (col == cols - 1) {
+				set(col, u);
+				return;
+			}
+
+			int lo = low(col, u);
+			int hi = high(u);
+			if (forward) {
+				set(col, lo);
+				place(col + 1, u - lo, true);
+			} else {
+				// the end of a forward walk: the highest value, and the end of
+				// the castles after it walked the way of its turn
+				set(col, hi);
+				place(col + 1, u - hi, (hi - lo) % 2 != 0);
+			}
+		}
+
+		/**
+		 * set castle col to v soldiers one soldier at a time
+		 */
+		void set(int col, int v) {
+			while (arr[col] < v) {
+				up(col);
+			}
+			while (arr[col] > v) {
+				down(col);
+			}
+		}
+
+		/**
+		 * add a soldier to castle col: a loss becomes a tie or a tie a win
+		 */
+		private void up(int col) {
+			int v = arr[col]++;
+			moves++;
+			// the data arrangements with v or v+1 soldiers at col
+			int from = start[col * (maxPerCastle + 2) + v];
+			int to = start[col * (maxPerCastle + 2) + v + 2];
+			for (int i = from; i < to; i++) {
+				int m = margin[rowsAt[i]]++;
+				points += ((m + 1) & ~1) == 0 ? 1 : 0; // -1 or 0
+			}
+		}
+
+		/**
+		 * take a soldier from castle col: a win becomes a tie or a tie a loss
+		 */
+		private void down(int col) {
+			int v = --arr[col];
+			int from = start[col * (maxPerCastle + 2) + v];
+			int to = start[col * (maxPerCastle + 2) + v + 2];
+			for (int i = from; i < to; i++) {
+				int m = margin[rowsAt[i]]--;
+				points -= (m & ~1) == 0 ? 1 : 0; // 0 or 1
+			}
+		}
+	}
+
+	/**
+	 * the task to walk the arrangements with castles before col fixed, split
+	 * into one task per value of the castle while col < SPLIT_DEPTH
+	 */
+	private class WalkTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final int[] prefix; // the castles before col
+		private final int col;
+
+		WalkTask(int[] prefix, int col) {
+			this.prefix = prefix;
+			this.col = col;
+		}
+
+		@Override
+		protected void compute() {
+			int left = soldiers;
+			for (int c = 0; c < col; c++) {
+				left -= prefix[c];
+			}
+
+			if (col >= SPLIT_DEPTH || col >= cols - 1) {
+				Walker walker = new Walker();
+				for (int c = 0; c < col; c++) {
+					walker.set(c, prefix[c]);
+				}
+				walker.place(col, left, true);
+				walker.moves = 0;
+				walker.walk(col, left, true);
+				walker.report(walker.steps & REPORT_MASK);
+				visited.addAndGet(walker.steps);
+				moved.addAndGet(walker.moves);
+				return;
+			}
+
+			List<WalkTask> tasks = new ArrayList<WalkTask>();
+			for (int v = low(col, left); v <= high(left); v++) {
+				int[] child = prefix.clone();
+				child[col] = v;
+				tasks.add(new WalkTask(child, col + 1));
+			}
+			invokeAll(tasks);
+		}
+	}
+
+	public static void main(String[] args) {
+		MinimalChangeSearch search = new MinimalChangeSearch();
+
+		long start = System.currentTimeMillis();
+		Incumbent best = search.search();
+		System.out.println("best: " + best);
+		System.out.println("arrangements: " + search.getVisited() + ", soldiers moved per step: " + search.getMovesPerStep());
+		System.out.println("time: " + (System.currentTimeMillis() - start) / 1000 + "s");
+	}
+}
@@ -0,0 +1,260 @@
+package bg.search;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import bg.checkpoint.Checkpoint;
+import bg.dataset.OutcomeTable;
+import bg.dataset.ReadExcel;
+import bg.metrics.Metrics;
+
+/**
+ * The exhaustive search for the global maximum score. Unlike
+ * ReadExcel.findBest(), the search space is split by rank into independent
+ * index ranges of the lexicographic order, which are searched on a
+ * ForkJoin pool by every core. Each worker walks its range in place with a
+ * single int array, scores it with the OutcomeTable and keeps its own best
+ * arrangement.
+ *
+ * search(Path) searches the space in chunks of ranks one after another and
+ * writes the next rank and the incumbent to a checkpoint between chunks,
+ * so that a search of days resumes where it stopped.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class ParallelSearch {
+	private static final long LEAF_SIZE = 1L << 22; // # of arrangements a worker scans at once
+	private static final long PRINT_INTERVAL = 10_000_000_000L; // # of arrangements between prints
+	private static final long CHUNK_SIZE = 1L << 32; // # of arrangements searched between checkpoints at most
+	private static final long CHECKPOINT_MINUTES = 5; // the time between two checkpoints
+
+	private final Compositions compositions;
+	private final OutcomeTable table;
+	private final ForkJoinPool pool;
+
+	private final AtomicLong checked = new AtomicLong(); // # of arrangements checked
+	private final AtomicLong nextPrint = new AtomicLong(PRINT_INTERVAL);
+	private volatile Consumer<Incumbent> listener; // given every new best, null if none
+	private double listened = -1; // the score of the last best given to the listener, guarded by this
+
+	/**
+	 * search 100 soldiers in 10 castles against the excel data on every core
+	 */
+	public ParallelSearch() {
+		this(new Compositions(), ReadExcel.getArray(), ForkJoinPool.commonPool());
+	}
+
+	public ParallelSearch(Compositions compositions, int[][] dataset, ForkJoinPool pool) {
+		this.compositions = compositions;
+		this.table = new OutcomeTable(dataset);
+		this.pool = pool;
+	}
+
+	/**
+	 * search the whole space
+	 * @return the best arrangement, null if there is none
+	 */
+	public Incumbent search() {
+		long size = compositions.size();
+		return size == 0 ? null : search(0, size);
+	}
+
+	/**
+	 * search the arrangements with rank in [from, to)
+	 * @param from - first rank, inclusive
+	 * @param to - last rank, exclusive
+	 * @return the best arrangement in the range
+	 */
+	public Incumbent search(long from, long to) {
+		if (from < 0 || to > compositions.size() || from >= to) {
+			throw new IllegalArgumentException("invalid range [" + from + ", " + to + ")");
+		}
+
+		Metrics.get().searchStarted("ParallelSearch", to - from);
+		return pool.invoke(new RangeTask(from, to));
+	}
+
+	/**
+	 * search the whole space, resuming from the checkpoint if there is one
+	 * and writing one every CHECKPOINT_MINUTES
+	 * @param checkpointPath - the checkpoint file
+	 * @return the best arrangement, null if there is none
+	 */
+	public Incumbent search(Path checkpointPath) {
+		long size = compositions.size();
+		long cursor = 0; // the first rank not searched yet
+		Incumbent best = null;
+		Metrics.get().searchStarted("ParallelSearch", size);
+
+		try (Checkpoint checkpoint = new Checkpoint(checkpointPath, "ParallelSearch", CHECKPOINT_MINUTES, TimeUnit.MINUTES)) {
+			try (DataInputStream in = checkpoint.load()) {
+				if (in != null) {
+					if (in.readInt() != compositions.getCastles() || in.readInt() != compositions.getSoldiers()
+							|| in.readInt() != compositions.getMaxPerCastle()) {
+						throw new IOException("a checkpoint of other compositions");
+					}
+					cursor = in.readLong();
+					double score = in.readDouble();
+					int[] genes = new int[in.readInt()];
+					for (int i = 0; i < genes.length; i++) {
+						genes[i] = in.readInt();
+					}
+					best = new Incumbent(score, genes);
+
+					checked.set(cursor);
+					nextPrint.set((cursor / PRINT_INTERVAL + 1) * PRINT_INTERVAL);
+					Metrics.get().searched(cursor);
+					Metrics.get().searchBest(score);
+					System.out.println("resumed from " + checkpoint.getPath() + " at " + cursor + ", best: " + best);
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("cannot resume from " + checkpoint.getPath(), e);
+			}
+
+			while (cursor < size) {
+				long end = Math.min(size, cursor + CHUNK_SIZE);
+				Incumbent chunk = pool.invoke(new RangeTask(cursor, end));
+				best = best == null ? chunk : Incumbent.better(best, chunk);
+				cursor = end;
+
+				if (checkpoint.isDue() || cursor == size) {
+					long savedCursor = cursor;
+					Incumbent saved = best;
+					checkpoint.save(out -> {
+						out.writeInt(compositions.getCastles());
+						out.writeInt(compositions.getSoldiers());
+						out.writeInt(compositions.getMaxPerCastle());
+						out.writeLong(savedCursor);
+						out.writeDouble(saved.getScore());
+						out.writeInt(saved.getGenes().length);
+						for (int gene : saved.getGenes()) {
+							out.writeInt(gene);
+						}
+					});
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * scan a range on the current thread
+	 */
+	private Incumbent scan(long from, long to) {
+		int[] arr = new int[compositions.getCastles()];
+		int[] bestArr = new int[compositions.getCastles()];
+		double best = -1, score;
+
+		compositions.unrank(from, arr);
+		for (long rank = from; rank < to; rank++) {
+			score = table.score(arr);
+			if (score > best) {
+				best = score;
+				System.arraycopy(arr, 0, bestArr, 0, arr.length);
+			}
+			compositions.next(arr);
+		}
+
+		progress(to - from);
+		Metrics.get().searchBest(best);
+		Incumbent incumbent = new Incumbent(best, bestArr);
+		if (listener != null) {
+			improved(incumbent);
+		}
+		return incumbent;
+	}
+
+	/**
+	 * give the incumbent of a range to the listener if it beats every one
+	 * given before
+	 */
+	private synchronized void improved(Incumbent incumbent) {
+		if (incumbent.getScore() > listened) {
+			listened = incumbent.getScore();
+			listener.accept(incumbent);
+		}
+	}
+
+	/**
+	 * have the incumbents streamed while searching instead of only returned
+	 * at the end: the listener is given the best of a range of LEAF_SIZE
+	 * ranks whenever it beats every one given before, on the thread that
+	 * searched the range
+	 * @param listener - null for none
+	 */
+	public void setListener(Consumer<Incumbent> listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * record the progress in the metrics and print it every PRINT_INTERVAL
+	 * arrangements
+	 */
+	private void progress(long count) {
+		Metrics metrics = Metrics.get();
+		metrics.evaluated(count);
+		metrics.searched(count);
+
+		long done = checked.addAndGet(count);
+		long print = nextPrint.get();
+		if (done >= print && nextPrint.compareAndSet(print, print + PRINT_INTERVAL)) {
+			System.out.printf("--checked: %d (%.2f%%)%n", done, 100.0 * done / compositions.size());
+		}
+	}
+
+	/**
+	 * @return the number of arrangements checked so far
+	 */
+	public long getChecked() {
+		return checked.get();
+	}
+
+	public Compositions getCompositions() {
+		return compositions;
+	}
+
+	/**
+	 * the task to search a range of ranks by splitting it in half
+	 */
+	private class RangeTask extends RecursiveTask<Incumbent> {
+		private static final long serialVersionUID = 1L;
+
+		private final long from;
+		private final long to;
+
+		RangeTask(long from, long to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Incumbent compute() {
+			if (to - from <= LEAF_SIZE) {
+				return scan(from, to);
+			}
+
+			long mid = from + (to - from) / 2;
+			RangeTask left = new RangeTask(from, mid);
+			left.fork();
+			Incumbent right = new RangeTask(mid, to).compute();
+			return Incumbent.better(left.join(), right);
+		}
+	}
+
+	public static void main(String[] args) {
+		ParallelSearch search = new ParallelSearch();
+		System.out.println("arrangements: " + search.getCompositions().size());
+
+		long start = System.currentTimeMillis();
+		Incumbent best = search.search();
+		System.out.println("best: " + best);
+		System.out.println("time: " + (System.currentTimeMillis() - start) / 1000 + "s");
+	}
+}
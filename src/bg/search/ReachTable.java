@@ -0,0 +1,67 @@
+package bg.search;
+
+/**
+ * The best margin, castle wins minus castle losses, that can be reached
+ * against each data arrangement on a range of castles with a number of
+ * soldiers, as if each data arrangement were played separately. Soldiers
+ * may be left over, so the margins never decrease with more soldiers.
+ *
+ * It bounds the score of any assignment of the castles in the range from
+ * above: no arrangement beats a data arrangement that cannot be beaten
+ * on its own.
+ *
+ * @author Qiyu Chen
+ *
+ */
+class ReachTable {
+	private final int rows; // # of data arrangements
+	private final int from; // the first castle of the range
+	private final int soldiers;
+
+	// reach[((col-from)*rows + row)*(soldiers+1) + s]: the best margin
+	// against row on castles col..to-1 with s soldiers
+	private final byte[] reach;
+
+	/**
+	 * @param dataset - the data arrangements
+	 * @param from - the first castle of the range
+	 * @param to - the castle after the range
+	 * @param soldiers - the most soldiers to look up
+	 * @param maxPerCastle - the most soldiers in a castle
+	 */
+	ReachTable(int[][] dataset, int from, int to, int soldiers, int maxPerCastle) {
+		this.rows = dataset.length;
+		this.from = from;
+		this.soldiers = soldiers;
+
+		// no castle left: margin 0 with any soldiers left over
+		reach = new byte[(to - from + 1) * rows * (soldiers + 1)];
+		for (int row = 0; row < rows; row++) {
+			for (int col = to - 1; col >= from; col--) {
+				int v = dataset[row][col];
+				for (int s = 0; s <= soldiers; s++) {
+					int margin = get(col + 1, row, s) - 1; // lose the castle
+					if (v <= maxPerCastle && v <= s) {
+						margin = Math.max(margin, get(col + 1, row, s - v)); // tie it
+					}
+					if (v + 1 <= maxPerCastle && v + 1 <= s) {
+						margin = Math.max(margin, get(col + 1, row, s - v - 1) + 1); // win it
+					}
+					reach[index(col, row, s)] = (byte)margin;
+				}
+			}
+		}
+	}
+
+	private int index(int col, int row, int s) {
+		return ((col - from) * rows + row) * (soldiers + 1) + s;
+	}
+
+	/**
+	 * @return the best margin against row on the castles from col to the
+	 * end of the range with s soldiers
+	 */
+	int get(int col, int row, int s) {
+		return reach[index(col, row, s)];
+	}
+}
@@ -0,0 +1,56 @@
+package bg.search;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import bg.metrics.Metrics;
+
+/**
+ * The incumbent of a search shared by every thread of it. The half points
+ * are read without a lock to prune, and raised by compare and set, so that
+ * only the thread that raised them copies its arrangement.
+ *
+ * @author Qiyu Chen
+ *
+ */
+class SharedIncumbent {
+	private final AtomicInteger points = new AtomicInteger(-1); // half points of the incumbent, -1 if none
+	private Incumbent best; // guarded by this
+
+	/**
+	 * @return the half points of the incumbent, -1 if there is none
+	 */
+	int getPoints() {
+		return points.get();
+	}
+
+	/**
+	 * keep the arrangement if it beats the incumbent
+	 * @param points - half points of the arrangement
+	 * @param arr - the arrangement, copied if kept
+	 * @return the half points of the incumbent
+	 */
+	int offer(int points, int[] arr) {
+		int current;
+		while (points > (current = this.points.get())) {
+			if (this.points.compareAndSet(current, points)) {
+				synchronized (this) {
+					if (points == this.points.get()) {
+						best = new Incumbent(points / 2.0, arr.clone());
+						Metrics.get().searchBest(points / 2.0);
+						System.out.println("new best score:" + points / 2.0 + " :" + Arrays.toString(arr));
+					}
+				}
+				return points;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * @return the incumbent, null if there is none
+	 */
+	synchronized Incumbent get() {
+		return best;
+	}
+}
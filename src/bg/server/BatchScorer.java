@@ -0,0 +1,142 @@
+package bg.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import bg.dataset.OutcomeTable;
+import bg.metrics.Metrics;
+
+/**
+ * Gathers the arrangements submitted by many threads into batches that one
+ * thread scores with a shared OutcomeTable. A request waits in the queue
+ * while the batch before it is scored, and then is scored together with
+ * every request that arrived meanwhile, so the table stays in the cache of
+ * one core and the callers only pay for a hand-off.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class BatchScorer implements AutoCloseable {
+	private static final Request STOP = new Request(null); // closes the queue
+
+	private final OutcomeTable table;
+	private final int maxBatch; // # of arrangements scored at once at most
+	private final BlockingQueue<Request> queue = new LinkedBlockingQueue<Request>();
+	private final Thread worker;
+	private final Object lock = new Object(); // orders the requests before STOP
+	private boolean closed; // guarded by lock
+
+	private volatile long batches; // # of batches scored, only written by the worker
+	private volatile long scored; // # of arrangements scored, only written by the worker
+
+	/**
+	 * start the scoring thread
+	 * @param table - the data arrangements to score against
+	 * @param maxBatch - # of arrangements scored at once at most
+	 */
+	public BatchScorer(OutcomeTable table, int maxBatch) {
+		if (maxBatch <= 0) {
+			throw new IllegalArgumentException("invalid batch size");
+		}
+
+		this.table = table;
+		this.maxBatch = maxBatch;
+		this.worker = new Thread(this::run, "batch-scorer");
+		worker.setDaemon(true);
+		worker.start();
+	}
+
+	/**
+	 * submit an arrangement to score
+	 * @param arr - an arrangement, not changed until it is scored
+	 * @return the score when the batch of the arrangement is scored
+	 */
+	public CompletableFuture<Double> submit(int[] arr) {
+		Request request = new Request(arr);
+		synchronized (lock) {
+			if (closed) {
+				request.future.completeExceptionally(new IllegalStateException("scorer closed"));
+			} else {
+				queue.add(request);
+			}
+		}
+		return request.future;
+	}
+
+	/**
+	 * score the batches until closed
+	 */
+	private void run() {
+		List<Request> batch = new ArrayList<Request>(maxBatch);
+		boolean stop = false;
+		while (!stop) {
+			try {
+				batch.add(queue.take());
+			} catch (InterruptedException e) {
+				break;
+			}
+			queue.drainTo(batch, maxBatch - 1);
+
+			int count = 0;
+			for (Request request : batch) {
+				if (request == STOP) {
+					stop = true;
+					continue;
+				}
+				try {
+					request.future.complete(table.score(request.arr));
+					count++;
+				} catch (RuntimeException e) {
+					request.future.completeExceptionally(e);
+				}
+			}
+			Metrics.get().evaluated(count);
+			scored += count;
+			batches++;
+			batch.clear();
+		}
+
+		// fail whatever was submitted while closing
+		Request request;
+		while ((request = queue.poll()) != null) {
+			request.future.completeExceptionally(new IllegalStateException("scorer closed"));
+		}
+	}
+
+	/**
+	 * @return the average number of arrangements in a batch
+	 */
+	public double getAverageBatch() {
+		long count = batches;
+		return count == 0 ? 0 : (double)scored / count;
+	}
+
+	/**
+	 * stop the scoring thread once the requests already in the queue are
+	 * scored
+	 */
+	@Override
+	public void close() {
+		synchronized (lock) {
+			if (!closed) {
+				closed = true;
+				queue.add(STOP);
+			}
+		}
+	}
+
+	/**
+	 * an arrangement waiting to be scored
+	 */
+	private static class Request {
+		private final int[] arr;
+		private final CompletableFuture<Double> future = new CompletableFuture<Double>();
+
+		Request(int[] arr) {
+			this.arr = arr;
+		}
+	}
+}
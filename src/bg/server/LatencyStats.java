@@ -0,0 +1,63 @@
+package bg.server;
+
+import java.util.Arrays;
+
+/**
+ * The latencies of the last requests in a ring, from which percentiles
+ * such as the p50 and p99 are taken.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class LatencyStats {
+	private final long[] samples; // the latencies in nanoseconds
+	private long count; // # of latencies recorded
+
+	/**
+	 * @param capacity - # of last latencies kept
+	 */
+	public LatencyStats(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("invalid capacity");
+		}
+		samples = new long[capacity];
+	}
+
+	/**
+	 * @param nanos - the latency of a request
+	 */
+	public synchronized void record(long nanos) {
+		samples[(int)(count++ % samples.length)] = nanos;
+	}
+
+	/**
+	 * @return the number of latencies recorded since the start
+	 */
+	public synchronized long getCount() {
+		return count;
+	}
+
+	/**
+	 * @param percent - in [0, 100]
+	 * @return the latency in microseconds below which percent of the last
+	 * requests are, 0 if there is none
+	 */
+	public double percentile(double percent) {
+		long[] sorted;
+		synchronized (this) {
+			sorted = Arrays.copyOf(samples, (int)Math.min(count, samples.length));
+		}
+		if (sorted.length == 0) {
+			return 0;
+		}
+
+		Arrays.sort(sorted);
+		int index = (int)Math.ceil(percent / 100 * sorted.length) - 1;
+		return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e3;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("requests: %d, p50: %.1fus, p99: %.1fus", getCount(), percentile(50), percentile(99));
+	}
+}
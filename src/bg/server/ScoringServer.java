@@ -0,0 +1,273 @@
+package bg.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+import bg.dataset.OutcomeTable;
+import bg.dataset.ReadExcel;
+import bg.search.Compositions;
+
+/**
+ * A local server that scores arrangements against the data arrangements,
+ * which are read once and kept in memory, so that other tools do not parse
+ * the excel file for every score.
+ *
+ * The protocol is text over TCP on the loopback address, one request per
+ * line and one reply per line:
+ *   "2 1 16 17 20 19 17 2 3 3"  ->  "68.5"
+ *   several arrangements separated by ';'  ->  their scores separated by ' '
+ *   "stats"  ->  the number of requests and the p50 and p99 latencies
+ *   "quit"  ->  closes the connection
+ * A request that cannot be scored gets a reply starting with "error:".
+ *
+ * Each connection is served on its own virtual thread when the JVM has
+ * them (Java 21+), or else on a cached thread pool. The arrangements of all
+ * connections are scored in batches by one BatchScorer.
+ *
+ * @author Qiyu Chen
+ *
+ */
+public class ScoringServer implements AutoCloseable {
+	public static final int DEFAULT_PORT = 7070;
+	private static final int MAX_BATCH = 1024; // # of arrangements scored at once at most
+	private static final int LATENCY_SAMPLES = 1 << 16; // # of last latencies for the percentiles
+
+	private final int cols; // # of castles
+	private final int soldiers; // # of soldiers of a valid arrangement
+	private final BatchScorer scorer;
+	private final LatencyStats latency = new LatencyStats(LATENCY_SAMPLES);
+	private final ServerSocket serverSocket;
+	private final ExecutorService connections;
+	private final Set<Socket> sockets = ConcurrentHashMap.newKeySet(); // the open connections
+	private volatile boolean closed;
+
+	/**
+	 * listen on a port of the loopback address with the excel data
+	 * @param port - 0 for any free port
+	 * @throws IOException
+	 */
+	public ScoringServer(int port) throws IOException {
+		this(ReadExcel.getArray(), Compositions.SOLDIERS, port);
+	}
+
+	/**
+	 * listen on a port of the loopback address
+	 * @param dataset - the data arrangements
+	 * @param soldiers - # of soldiers of a valid arrangement
+	 * @param port - 0 for any free port
+	 * @throws IOException
+	 */
+	public ScoringServer(int[][] dataset, int soldiers, int port) throws IOException {
+		OutcomeTable table = new OutcomeTable(dataset);
+		this.cols = table.getCols();
+		this.soldiers = soldiers;
+		this.scorer = new BatchScorer(table, MAX_BATCH);
+		this.serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+		this.connections = newConnectionExecutor();
+	}
+
+	/**
+	 * @return a virtual thread per task executor if the JVM has one, or
+	 * else a cached thread pool
+	 */
+	static ExecutorService newConnectionExecutor() {
+		try {
+			return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return Executors.newCachedThreadPool();
+		}
+	}
+
+	/**
+	 * accept connections until closed
+	 * @throws IOException
+	 */
+	public void serve() throws IOException {
+		while (!closed) {
+			Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (IOException e) {
+				if (closed) {
+					return;
+				}
+				throw e;
+			}
+			sockets.add(socket);
+			if (closed) {
+				socket.close(); // accepted while closing
+				return;
+			}
+			try {
+				connections.execute(() -> handle(socket));
+			} catch (RejectedExecutionException e) {
+				sockets.remove(socket);
+				socket.close(); // the connections were shut down by close()
+				return;
+			}
+		}
+	}
+
+	/**
+	 * reply to the requests of a connection until it is closed
+	 */
+	private void handle(Socket socket) {
+		try (Socket s = socket;
+				BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.US_ASCII));
+				BufferedWriter out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.US_ASCII))) {
+			String line;
+			while ((line = in.readLine()) != null) {
+				line = line.trim();
+				if (line.isEmpty()) {
+					continue;
+				} else if (line.equals("quit")) {
+					break;
+				} else if (line.equals("stats")) {
+					out.write(getStats());
+				} else {
+					out.write(reply(line));
+				}
+				out.newLine();
+
+				// a client sending several requests at once gets the replies at once
+				if (!in.ready()) {
+					out.flush();
+				}
+			}
+			out.flush();
+		} catch (IOException e) {
+			// the client went away, or the server closed the connection
+		} finally {
+			sockets.remove(socket);
+		}
+	}
+
+	/**
+	 * score the arrangements of a request and record its latency
+	 * @param line - arrangements separated by ';'
+	 * @return the scores separated by ' ', or the error
+	 */
+	String reply(String line) {
+		long start = System.nanoTime();
+		String[] requests = line.split(";");
+		List<CompletableFuture<Double>> scores = new ArrayList<CompletableFuture<Double>>(requests.length);
+		try {
+			for (String request : requests) {
+				scores.add(scorer.submit(parse(request)));
+			}
+		} catch (IllegalArgumentException e) {
+			return "error: " + e.getMessage();
+		}
+
+		StringBuilder reply = new StringBuilder();
+		try {
+			for (CompletableFuture<Double> score : scores) {
+				if (reply.length() > 0) {
+					reply.append(' ');
+				}
+				reply.append(score.join());
+			}
+		} catch (RuntimeException e) {
+			return "error: " + e.getMessage();
+		}
+
+		latency.record(System.nanoTime() - start);
+		return reply.toString();
+	}
+
+	/**
+	 * @param request - the soldiers at each castle separated by spaces or
+	 * commas
+	 * @return the arrangement
+	 * @throws IllegalArgumentException if it is not a valid arrangement
+	 */
+	private int[] parse(String request) {
+		String[] fields = request.trim().split("[,\\s]+");
+		if (fields.length != cols) {
+			throw new IllegalArgumentException("expected " + cols + " castles: " + request.trim());
+		}
+
+		int[] arr = new int[cols];
+		int sum = 0;
+		for (int col = 0; col < cols; col++) {
+			try {
+				arr[col] = Integer.parseInt(fields[col]);
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("not a number: " + fields[col]);
+			}
+			if (arr[col] < 0) {
+				throw new IllegalArgumentException("negative soldiers: " + arr[col]);
+			}
+			sum += arr[col];
+		}
+		if (sum != soldiers) {
+			throw new IllegalArgumentException("expected " + soldiers + " soldiers: " + sum);
+		}
+		return arr;
+	}
+
+	/**
+	 * @return the number of requests, the p50 and p99 latencies and the
+	 * average batch
+	 */
+	public String getStats() {
+		return String.format("%s, average batch: %.1f", latency, scorer.getAverageBatch());
+	}
+
+	public LatencyStats getLatency() {
+		return latency;
+	}
+
+	/**
+	 * @return the port the server listens on
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * stop accepting connections, close the open ones and stop the scorer
+	 */
+	@Override
+	public void close() throws IOException {
+		closed = true;
+		serverSocket.close();
+		for (Socket socket : sockets) {
+			try {
+				socket.close(); // unblocks the handler reading it
+			} catch (IOException e) {
+				// closed already
+			}
+		}
+		connections.shutdownNow();
+		scorer.close();
+	}
+
+	/**
+	 * start the server
+	 * @param args - the port, DEFAULT_PORT if none
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws IOException {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+		try (ScoringServer server = new ScoringServer(port)) {
+			System.out.println("scoring server on 127.0.0.1:" + server.getPort());
+			server.serve();
+		}
+	}
+}